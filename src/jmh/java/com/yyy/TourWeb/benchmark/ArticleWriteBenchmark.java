@@ -0,0 +1,66 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新增文章。每次迭代前重新启动Redis和Spring容器并写入同样的初始数据，
+ * 迭代中新增的文章不会累积到后续迭代，也不会影响 {@link UserServiceBenchmark} 中读取的数据量
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ArticleWriteBenchmark {
+
+    @Param("1000")
+    private int articles;
+
+    @Param("10")
+    private int users;
+
+    private BenchmarkContext context;
+
+    private UserService userService;
+
+    private String[] accounts;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        context = new BenchmarkContext(articles, users);
+        userService = context.getUserService();
+        accounts = context.getAccounts();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public Result<Object> addArticle() {
+        String account = accounts[ThreadLocalRandom.current().nextInt(accounts.length)];
+        return userService.addArticle(Samples.article(account)).block();
+    }
+}
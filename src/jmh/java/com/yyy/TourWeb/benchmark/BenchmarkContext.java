@@ -0,0 +1,139 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.TourWebApplication;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.service.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 基准测试环境：本机启动一个独立的Redis（embedded-redis自带的redis-server，随机端口、不持久化），
+ * 再以该Redis启动完整的Spring容器（压测时在随机端口启动HTTP服务），写入测试数据
+ *
+ * @author yyy
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    public static final String PASSWORD = "password";
+
+    private static final String REDIS_PASSWORD = "benchmark";
+
+    private final RedisServer redisServer;
+
+    private final ConfigurableApplicationContext context;
+
+    private final Path uploadDir;
+
+    private final long[] articleIds;
+
+    private final String[] accounts;
+
+    private final int port;
+
+    /**
+     * @param articles 预先写入的文章数
+     * @param users    预先注册的用户数
+     */
+    public BenchmarkContext(int articles, int users) throws IOException {
+        this(articles, users, true);
+    }
+
+    /**
+     * @param articles 预先写入的文章数
+     * @param users    预先注册的用户数
+     * @param metrics  是否记录接口和Redis命令的耗时（tourweb.metrics.enabled）
+     */
+    public BenchmarkContext(int articles, int users, boolean metrics) throws IOException {
+        this(articles, users, metrics, false);
+    }
+
+    /**
+     * @param articles 预先写入的文章数
+     * @param users    预先注册的用户数
+     * @param metrics  是否记录接口和Redis命令的耗时（tourweb.metrics.enabled）
+     * @param web      是否启动HTTP服务
+     */
+    public BenchmarkContext(int articles, int users, boolean metrics, boolean web) throws IOException {
+        int redisPort = freePort();
+        redisServer = RedisServer.builder().port(redisPort).bind("127.0.0.1")
+                .setting("save \"\"").setting("appendonly no").setting("requirepass " + REDIS_PASSWORD)
+                .build();
+        redisServer.start();
+
+        uploadDir = Files.createTempDirectory("tourweb-benchmark");
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // 以命令行参数传入，优先于application.properties；压测请求都来自本机，不限流
+        context = new SpringApplicationBuilder(TourWebApplication.class)
+                .web(web ? WebApplicationType.REACTIVE : WebApplicationType.NONE)
+                .run("--spring.redis.host=127.0.0.1",
+                        "--spring.redis.port=" + redisPort,
+                        "--spring.redis.password=" + REDIS_PASSWORD,
+                        "--spring.redis.database=0",
+                        "--tourweb.index.rebuild-on-startup=false",
+                        "--tourweb.search.build-on-startup=false",
+                        "--tourweb.metrics.enabled=" + metrics,
+                        "--tourweb.ratelimit.enabled=false",
+                        "--tourweb.upload.dir=" + uploadDir,
+                        "--server.port=0",
+                        "--logging.level.root=WARN");
+        port = web ? context.getEnvironment().getRequiredProperty("local.server.port", Integer.class) : -1;
+
+        UserService userService = getUserService();
+        accounts = new String[users];
+        for (int i = 0; i < users; i++) {
+            accounts[i] = "bench" + i;
+            userService.reg(new User(accounts[i], PASSWORD, null)).block();
+        }
+
+        articleIds = new long[articles];
+        for (int i = 0; i < articles; i++) {
+            Article article = Samples.article(accounts[i % users]);
+            userService.addArticle(article).block();
+            articleIds[i] = article.getId();
+        }
+    }
+
+    public UserService getUserService() {
+        return context.getBean(UserService.class);
+    }
+
+    public long[] getArticleIds() {
+        return articleIds;
+    }
+
+    public String[] getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return HTTP服务的端口，未启动时为-1
+     */
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            redisServer.stop();
+            FileSystemUtils.deleteRecursively(uploadDir);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
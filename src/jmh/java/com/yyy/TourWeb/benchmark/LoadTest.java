@@ -0,0 +1,411 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.domain.Comment;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.tools.LatencyHistogram;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP压测：以 {@link BenchmarkContext} 启动本地Redis和完整的服务，写入用户和文章后按配置的比例请求各接口，输出每个接口的吞吐量和延迟分位数。
+ * <p>
+ * 请求按开环模型发出：到达时间事先按速率排好（均匀或泊松），不等待前一个请求返回；延迟从计划的发出时间算起，
+ * 服务变慢、发送端来不及发出时，排队的时间也计入延迟（避免 coordinated omission）。
+ * <p>
+ * 运行：mvn -P benchmark test-compile exec:exec -Dbenchmark.main=com.yyy.TourWeb.benchmark.LoadTest -Dbenchmark="rate=500 duration=60"
+ * <pre>
+ * users=100        注册的用户数
+ * articles=1000    写入的文章数
+ * rate=200         每秒请求数
+ * duration=30      统计的秒数
+ * warmup=10        预热的秒数，期间的请求不计入结果
+ * arrival=poisson  到达间隔：poisson（指数分布）或 uniform（固定间隔）
+ * skew=1.0         文章热度的Zipf指数，0为均匀
+ * mix=login:1,articles:4,article:10,comment:2,upload:1   各接口的请求比例
+ * timeout=10       单个请求超时的秒数，超时计为失败
+ * max-in-flight=10000  未返回的请求数上限，超出时新请求直接计为失败
+ * metrics=true     服务端是否记录指标（tourweb.metrics.enabled）
+ * </pre>
+ *
+ * @author yyy
+ */
+public class LoadTest implements AutoCloseable {
+
+    /**
+     * 上传用的图片数，内容各不相同，避免全部命中按内容去重
+     */
+    private static final int IMAGES = 32;
+
+    private final Map<String, String> options;
+
+    private final BenchmarkContext context;
+
+    private final WebClient client;
+
+    private final Duration timeout;
+
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Endpoint[] endpoints;
+
+    /**
+     * 各接口的累计比例，按随机数选择接口
+     */
+    private final int[] cumulativeWeights;
+
+    /**
+     * 文章按Zipf分布被访问的累计概率，下标越小越热门
+     */
+    private final double[] articleCdf;
+
+    private final List<byte[]> images = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        try (LoadTest test = new LoadTest(options)) {
+            test.run();
+        }
+        System.exit(0);
+    }
+
+    public LoadTest(Map<String, String> options) throws IOException {
+        this.options = options;
+        timeout = Duration.ofSeconds(longOption("timeout", 10));
+        maxInFlight = (int) longOption("max-in-flight", 10000);
+        Map<Endpoint, Integer> mix = mix(option("mix", "login:1,articles:4,article:10,comment:2,upload:1"));
+        endpoints = mix.keySet().toArray(new Endpoint[0]);
+        cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+
+        for (int i = 0; i < IMAGES; i++) {
+            images.add(image(i));
+        }
+
+        int articles = (int) longOption("articles", 1000);
+        int users = (int) longOption("users", 100);
+        articleCdf = zipf(articles, Double.parseDouble(option("skew", "1.0")));
+
+        long start = System.nanoTime();
+        context = new BenchmarkContext(articles, users, Boolean.parseBoolean(option("metrics", "true")), true);
+        System.out.printf("已启动，端口 %d，写入 %d 个用户、%d 篇文章，耗时 %d 秒%n",
+                context.getPort(), users, articles, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        client = WebClient.create("http://127.0.0.1:" + context.getPort());
+    }
+
+    public void run() throws InterruptedException {
+        double rate = Double.parseDouble(option("rate", "200"));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(longOption("warmup", 10));
+        long durationNanos = TimeUnit.SECONDS.toNanos(longOption("duration", 30));
+        boolean poisson = !"uniform".equals(option("arrival", "poisson"));
+
+        Map<String, Stats> warmup = stats();
+        Map<String, Stats> measured = stats();
+        Random random = new Random();
+
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        double intendedOffset = 0;
+        while (true) {
+            long intended = start + (long) intendedOffset;
+            if (intended >= end) {
+                break;
+            }
+
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Endpoint endpoint = pick(random);
+            fire(endpoint, intended, (intended < measureStart ? warmup : measured).get(endpoint.name));
+
+            double gap = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+            intendedOffset += gap * TimeUnit.SECONDS.toNanos(1);
+        }
+
+        // 等待已发出的请求返回（或超时）
+        long drainDeadline = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        report(measured, rate, durationNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+    }
+
+    /**
+     * 发出一个请求，完成后以计划发出时间为起点记录延迟
+     */
+    private void fire(Endpoint endpoint, long intended, Stats stats) {
+        if (inFlight.get() >= maxInFlight) {
+            stats.record(intended, false);
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        endpoint.request(this)
+                .flatMap(response -> response.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(body -> response.statusCode().is2xxSuccessful() && !body.contains("\"success\":false")))
+                .timeout(timeout)
+                .subscribe(success -> {
+                    stats.record(intended, success);
+                    inFlight.decrementAndGet();
+                }, e -> {
+                    stats.record(intended, false);
+                    inFlight.decrementAndGet();
+                });
+    }
+
+    private Endpoint pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    private String randomAccount() {
+        String[] accounts = context.getAccounts();
+        return accounts[ThreadLocalRandom.current().nextInt(accounts.length)];
+    }
+
+    private long randomArticleId() {
+        int index = Arrays.binarySearch(articleCdf, ThreadLocalRandom.current().nextDouble());
+        index = index >= 0 ? index : Math.min(-index - 1, articleCdf.length - 1);
+        return context.getArticleIds()[index];
+    }
+
+    private Map<String, Stats> stats() {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            stats.put(endpoint.name, new Stats());
+        }
+        return stats;
+    }
+
+    private void report(Map<String, Stats> measured, double rate, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        System.out.printf("%n目标速率 %.0f/s，统计 %.0f 秒，延迟单位 ms（从计划发出时间算起）%n", rate, seconds);
+        System.out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "mean", "p50", "p90", "p99", "p99.9", "max");
+
+        Stats all = new Stats();
+        measured.forEach((name, stats) -> {
+            print(name, stats, seconds);
+            all.merge(stats);
+        });
+        print("total", all, seconds);
+    }
+
+    private static void print(String name, Stats stats, double seconds) {
+        LatencyHistogram latency = stats.latency;
+        long count = latency.getCount();
+        long[] quantiles = latency.quantiles(0.5, 0.9, 0.99, 0.999);
+        System.out.printf("%-10s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, count, stats.errors.sum(), count / seconds,
+                count == 0 ? 0 : latency.getSum() / 1e3 / count,
+                quantiles[0] / 1e3, quantiles[1] / 1e3, quantiles[2] / 1e3, quantiles[3] / 1e3, latency.getMax() / 1e3);
+    }
+
+    /**
+     * 单个接口的统计，失败的请求同样计入延迟
+     */
+    private static class Stats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        void record(long intended, boolean success) {
+            latency.recordNanos(System.nanoTime() - intended);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        void merge(Stats other) {
+            latency.add(other.latency);
+            errors.add(other.errors.sum());
+        }
+    }
+
+    /**
+     * 被压测的接口
+     */
+    private enum Endpoint {
+
+        LOGIN("login") {
+            @Override
+            Mono<ClientResponse> request(LoadTest test) {
+                return test.client.post().uri("/api/user/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .syncBody(new User(test.randomAccount(), BenchmarkContext.PASSWORD, null))
+                        .exchange();
+            }
+        },
+        ARTICLES("articles") {
+            @Override
+            Mono<ClientResponse> request(LoadTest test) {
+                return test.client.get().uri("/api/user/articles").exchange();
+            }
+        },
+        ARTICLE("article") {
+            @Override
+            Mono<ClientResponse> request(LoadTest test) {
+                return test.client.get().uri("/api/user/article/{id}", test.randomArticleId()).exchange();
+            }
+        },
+        COMMENT("comment") {
+            @Override
+            Mono<ClientResponse> request(LoadTest test) {
+                long id = test.randomArticleId();
+                return test.client.post().uri("/api/user/comment/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .syncBody(new Comment(null, "去过，推荐早上去，人少。", test.randomAccount(), id, null))
+                        .exchange();
+            }
+        },
+        UPLOAD("upload") {
+            @Override
+            Mono<ClientResponse> request(LoadTest test) {
+                byte[] image = test.images.get(ThreadLocalRandom.current().nextInt(test.images.size()));
+                MultipartBodyBuilder body = new MultipartBodyBuilder();
+                body.part("file", new ByteArrayResource(image) {
+                    @Override
+                    public String getFilename() {
+                        return "icon.png";
+                    }
+                });
+                return test.client.post().uri("/api/user/icon/upload")
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(BodyInserters.fromMultipartData(body.build()))
+                        .exchange();
+            }
+        };
+
+        private final String name;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        abstract Mono<ClientResponse> request(LoadTest test);
+    }
+
+    private static Map<Endpoint, Integer> mix(String mix) {
+        Map<Endpoint, Integer> result = new LinkedHashMap<>();
+        for (String item : mix.split(",")) {
+            String[] nameAndWeight = item.trim().split(":");
+            Endpoint endpoint = null;
+            for (Endpoint candidate : Endpoint.values()) {
+                if (candidate.name.equals(nameAndWeight[0])) {
+                    endpoint = candidate;
+                }
+            }
+            if (endpoint == null || nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("mix格式为 接口:比例，接口为 login、articles、article、comment、upload：" + item);
+            }
+            int weight = Integer.parseInt(nameAndWeight[1]);
+            if (weight > 0) {
+                result.put(endpoint, weight);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("mix中没有比例大于0的接口");
+        }
+        return result;
+    }
+
+    /**
+     * Zipf分布的累计概率：第k热门的文章被访问的概率与 1/k^skew 成正比
+     */
+    private static double[] zipf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, skew);
+            cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    /**
+     * 64x64的PNG，颜色随序号变化
+     */
+    private static byte[] image(int seed) throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(seed * 7 % 256, seed * 31 % 256, seed * 61 % 256));
+        graphics.fillRect(0, 0, 64, 64);
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        // 经 exec:exec 传入时所有选项在同一个参数里
+        for (String arg : String.join(" ", args).trim().split("\\s+")) {
+            if (arg.isEmpty()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("参数格式为 key=value：" + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private String option(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    private long longOption(String key, long defaultValue) {
+        return Long.parseLong(option(key, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录高峰时其它请求的延迟：后台持续保持若干个并发的登录请求（每个返回后立即发出下一个），
+ * 同时测量经过HTTP服务的 GET /api/user/article/{id} 的延迟分布（SampleTime，看p50/p99）。
+ * 密码哈希不在事件循环线程上计算时，该延迟应与没有登录时（logins=0）接近
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoginBurstBenchmark {
+
+    @Param("1000")
+    private int articles;
+
+    @Param("100")
+    private int users;
+
+    /**
+     * 并发的登录请求数，0为对照组
+     */
+    @Param({"0", "16", "64"})
+    private int logins;
+
+    private BenchmarkContext context;
+
+    private WebClient client;
+
+    private long[] articleIds;
+
+    private String[] accounts;
+
+    private final LongAdder completedLogins = new LongAdder();
+
+    private volatile boolean running;
+
+    private long startNanos;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new BenchmarkContext(articles, users, false, true);
+        client = WebClient.create("http://127.0.0.1:" + context.getPort());
+        articleIds = context.getArticleIds();
+        accounts = context.getAccounts();
+
+        running = true;
+        startNanos = System.nanoTime();
+        for (int i = 0; i < logins; i++) {
+            login();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        running = false;
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%n登录 %d 次，%.1f 次/秒%n", completedLogins.sum(), completedLogins.sum() / seconds);
+        context.close();
+    }
+
+    @Benchmark
+    public String getArticle() {
+        long id = articleIds[ThreadLocalRandom.current().nextInt(articleIds.length)];
+        return client.get().uri("/api/user/article/{id}", id)
+                .exchange()
+                .flatMap(response -> response.bodyToMono(String.class))
+                .block();
+    }
+
+    /**
+     * 发出一个登录请求，返回后（无论成功与否）发出下一个
+     */
+    private void login() {
+        if (!running) {
+            return;
+        }
+
+        String account = accounts[ThreadLocalRandom.current().nextInt(accounts.length)];
+        client.post().uri("/api/user/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new User(account, BenchmarkContext.PASSWORD, null))
+                .exchange()
+                .flatMap(response -> response.bodyToMono(String.class))
+                .doFinally(signal -> {
+                    completedLogins.increment();
+                    login();
+                })
+                .subscribe(body -> {
+                }, e -> {
+                });
+    }
+}
@@ -0,0 +1,152 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.config.InstrumentedConnectionFactory;
+import com.yyy.TourWeb.config.MetricsFilter;
+import com.yyy.TourWeb.service.MetricsRegistry;
+import com.yyy.TourWeb.tools.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReactiveHashCommands;
+import org.springframework.data.redis.connection.ReactiveRedisClusterConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标记录本身的开销：直方图记录一次耗时；经过MetricsFilter与直接调用过滤器链的差值；
+ * 经过InstrumentedConnectionFactory与直接使用连接执行一条命令的差值（连接为立即返回的假连接，不含网络往返）。
+ * 含真实Redis往返的对比见 UserServiceBenchmark 的 metrics 参数
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private LatencyHistogram histogram;
+
+    private MetricsFilter metricsFilter;
+
+    private WebFilterChain chain;
+
+    private ServerWebExchange exchange;
+
+    private ReactiveRedisConnectionFactory connectionFactory;
+
+    private ReactiveRedisConnectionFactory instrumentedConnectionFactory;
+
+    private ByteBuffer key;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        ReflectionTestUtils.setField(metricsRegistry, "enabled", true);
+        ReflectionTestUtils.setField(metricsRegistry, "maxRoutes", 200);
+        metricsFilter = new MetricsFilter();
+        ReflectionTestUtils.setField(metricsFilter, "metricsRegistry", metricsRegistry);
+
+        // hide()：避免block()对Mono.empty()直接返回，两组都走完整的订阅流程
+        chain = exchange -> Mono.<Void>empty().hide();
+
+        // 模拟经过函数式路由匹配后的请求：GET /api/user/article/{id}
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/user/article/1136715142410240").build());
+        exchange.getAttributes().put(RouterFunctions.REQUEST_ATTRIBUTE, new Object());
+        exchange.getAttributes().put(RouterFunctions.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Collections.singletonMap("id", "1136715142410240"));
+
+        key = ByteBuffer.wrap("Articles".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer value = ByteBuffer.wrap("{}".getBytes(StandardCharsets.UTF_8));
+        ReactiveHashCommands hashCommands = stub(ReactiveHashCommands.class, (proxy, method, args) -> Mono.just(value).hide());
+        ReactiveRedisConnection connection = stub(ReactiveRedisConnection.class,
+                (proxy, method, args) -> method.getName().equals("hashCommands") ? hashCommands : null);
+        connectionFactory = new ReactiveRedisConnectionFactory() {
+            @Override
+            public ReactiveRedisConnection getReactiveConnection() {
+                return connection;
+            }
+
+            @Override
+            public ReactiveRedisClusterConnection getReactiveClusterConnection() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+                return null;
+            }
+        };
+        instrumentedConnectionFactory = new InstrumentedConnectionFactory(connectionFactory, metricsRegistry);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(ThreadLocalRandom.current().nextLong(100, 100_000));
+    }
+
+    @Benchmark
+    public Void chainOnly() {
+        return chain.filter(exchange).block();
+    }
+
+    @Benchmark
+    public Void chainWithMetricsFilter() {
+        return metricsFilter.filter(exchange, chain).block();
+    }
+
+    @Benchmark
+    public ByteBuffer redisCommand() {
+        return hGet(connectionFactory);
+    }
+
+    @Benchmark
+    public ByteBuffer redisCommandInstrumented() {
+        return hGet(instrumentedConnectionFactory);
+    }
+
+    /**
+     * 与ReactiveRedisTemplate的调用方式相同：每条命令获取一次连接，用完关闭
+     */
+    private ByteBuffer hGet(ReactiveRedisConnectionFactory factory) {
+        ReactiveRedisConnection connection = factory.getReactiveConnection();
+        try {
+            return connection.hashCommands().hGet(key, key).block();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MetricsBenchmark.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
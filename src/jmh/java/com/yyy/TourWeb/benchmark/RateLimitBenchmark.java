@@ -0,0 +1,99 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.config.RateLimitFilter;
+import com.yyy.TourWeb.service.RateLimitService;
+import com.yyy.TourWeb.tools.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地限流的开销：令牌桶取一次令牌（key在一万个IP中随机，令牌充足）；
+ * 经过RateLimitFilter与直接调用过滤器链的差值（未启用Redis滑动窗口）
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimitBenchmark {
+
+    private static final int KEYS = 10000;
+
+    private String[] keys;
+
+    private RateLimiter rateLimiter;
+
+    private RateLimitFilter rateLimitFilter;
+
+    private WebFilterChain chain;
+
+    private ServerWebExchange exchange;
+
+    @Setup
+    public void setup() {
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+        }
+        // 令牌充足，测到的是通过时的开销
+        rateLimiter = new RateLimiter(1e9, 1000000000, 100000);
+
+        RateLimitService rateLimitService = new RateLimitService();
+        ReflectionTestUtils.setField(rateLimitService, "enabled", true);
+        ReflectionTestUtils.setField(rateLimitService, "ipPermitsPerSecond", 1e9);
+        ReflectionTestUtils.setField(rateLimitService, "ipBurst", 1000000000);
+        ReflectionTestUtils.setField(rateLimitService, "accountPermitsPerSecond", 1e9);
+        ReflectionTestUtils.setField(rateLimitService, "accountBurst", 1000000000);
+        ReflectionTestUtils.setField(rateLimitService, "maxKeys", 100000L);
+        rateLimitService.init();
+
+        rateLimitFilter = new RateLimitFilter();
+        ReflectionTestUtils.setField(rateLimitFilter, "rateLimitService", rateLimitService);
+        ReflectionTestUtils.setField(rateLimitFilter, "paths",
+                new String[]{"/api/user/login", "/api/user/reg", "/api/user/article", "/api/user/comment/*"});
+        rateLimitFilter.init();
+
+        // hide()：避免block()对Mono.empty()直接返回，两组都走完整的订阅流程
+        chain = exchange -> Mono.<Void>empty().hide();
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/user/comment/1136715142410240")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 40000)).build());
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public Void chainOnly() {
+        return chain.filter(exchange).block();
+    }
+
+    @Benchmark
+    public Void chainWithRateLimitFilter() {
+        return rateLimitFilter.filter(exchange, chain).block();
+    }
+}
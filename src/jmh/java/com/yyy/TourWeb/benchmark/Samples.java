@@ -0,0 +1,68 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+
+import java.time.ZonedDateTime;
+
+/**
+ * 基准测试用的数据，大小与线上常见的文章、用户相近
+ *
+ * @author yyy
+ */
+public class Samples {
+
+    /**
+     * 正文重复的段落数，约2KB（UTF-8约6KB）
+     */
+    private static final int PARAGRAPHS = 20;
+
+    private static final String PARAGRAPH = "早上八点从酒店出发，步行到故宫午门排队入场，沿中轴线一路向北，"
+            + "太和殿前人很多，建议先去东西六宫。Day 2 去了长城，慕田峪比八达岭人少。\n";
+
+    private Samples() {
+    }
+
+    public static String content() {
+        StringBuilder content = new StringBuilder(PARAGRAPH.length() * PARAGRAPHS);
+        for (int i = 0; i < PARAGRAPHS; i++) {
+            content.append(PARAGRAPH);
+        }
+        return content.toString();
+    }
+
+    /**
+     * 新文章，未设置id
+     *
+     * @param account 作者
+     * @return 文章
+     */
+    public static Article article(String account) {
+        return Article.builder()
+                .title("北京五日游攻略：故宫、长城、胡同")
+                .content(content())
+                .userAccount(account)
+                .imgPath("/upload/ab/cd/abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789.jpg")
+                .isForeign(false)
+                .build();
+    }
+
+    /**
+     * 已保存的文章，带id、计数和时间
+     *
+     * @return 文章
+     */
+    public static Article storedArticle() {
+        return article("bench0").toBuilder()
+                .id(1136715142410240L)
+                .clickCount(1024)
+                .commentCount(32)
+                .gmtCreate(ZonedDateTime.now())
+                .build();
+    }
+
+    public static User user() {
+        return new User("bench0", "pbkdf2$100000$v+E6CtOLHstqMQQ93J4AMQ==$XqrF9PJPPTBKBXfd7xLgAsLNqUqH7ZH9cHUdWiJSLIQ=",
+                "/upload/ab/cd/abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789.png");
+    }
+}
@@ -0,0 +1,100 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.tools.CommonUtil;
+import com.yyy.TourWeb.tools.JsonRedisSerializer;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 序列化、key拼接等不依赖Redis的热点方法
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private Article article;
+
+    private String articleJson;
+
+    private User user;
+
+    private String userJson;
+
+    private JsonRedisSerializer<Article> articleSerializer;
+
+    private ByteBuffer articleBytes;
+
+    private long articleId;
+
+    @Setup
+    public void setup() {
+        article = Samples.storedArticle();
+        articleJson = JsonUtils.toString(article);
+        user = Samples.user();
+        userJson = JsonUtils.toString(user);
+        articleSerializer = new JsonRedisSerializer<>(Article.class);
+        articleBytes = articleSerializer.write(article);
+        articleId = article.getId();
+    }
+
+    @Benchmark
+    public Article articleToObject() {
+        return JsonUtils.toObject(articleJson, Article.class);
+    }
+
+    @Benchmark
+    public String articleToString() {
+        return JsonUtils.toString(article);
+    }
+
+    @Benchmark
+    public User userToObject() {
+        return JsonUtils.toObject(userJson, User.class);
+    }
+
+    @Benchmark
+    public String userToString() {
+        return JsonUtils.toString(user);
+    }
+
+    @Benchmark
+    public Article articleSerializerRead() {
+        return articleSerializer.read(articleBytes.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer articleSerializerWrite() {
+        return articleSerializer.write(article);
+    }
+
+    @Benchmark
+    public String redisKeyOf() {
+        return RedisKey.of(RedisKey.COMMENT, articleId);
+    }
+
+    @Benchmark
+    public String randomString() {
+        return CommonUtil.randomString(16);
+    }
+}
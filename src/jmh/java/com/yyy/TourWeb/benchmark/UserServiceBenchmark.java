@@ -0,0 +1,111 @@
+package com.yyy.TourWeb.benchmark;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.Page;
+import com.yyy.TourWeb.tools.RawResult;
+import com.yyy.TourWeb.tools.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserService的端到端调用，经过本地缓存、序列化和真实的Redis往返。
+ * 只有读和登录，数据量在整个测试中不变；写入见 {@link ArticleWriteBenchmark}
+ *
+ * @author yyy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param("1000")
+    private int articles;
+
+    @Param("100")
+    private int users;
+
+    /**
+     * 对比记录Redis命令耗时的开销
+     */
+    @Param({"true", "false"})
+    private boolean metrics;
+
+    private BenchmarkContext context;
+
+    private UserService userService;
+
+    private long[] articleIds;
+
+    private String[] accounts;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new BenchmarkContext(articles, users, metrics);
+        userService = context.getUserService();
+        articleIds = context.getArticleIds();
+        accounts = context.getAccounts();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public Result<Article> getArticle() {
+        return userService.getArticle(randomArticleId()).block();
+    }
+
+    @Benchmark
+    public RawResult getArticleRaw() {
+        return userService.getArticleRaw(randomArticleId()).block();
+    }
+
+    /**
+     * 首页文章列表（GET /articles 的默认分页）
+     */
+    @Benchmark
+    public Result<Page<Article>> getAllArticle() {
+        return userService.getArticlePage(null, 20).block();
+    }
+
+    /**
+     * 流式输出全部文章
+     */
+    @Benchmark
+    public Long streamAllArticle() {
+        return userService.streamAllArticle().count().block();
+    }
+
+    /**
+     * 登录，主要开销为密码哈希
+     */
+    @Benchmark
+    public Result<Object> login() {
+        String account = accounts[ThreadLocalRandom.current().nextInt(accounts.length)];
+        return userService.login(new User(account, BenchmarkContext.PASSWORD, null)).block();
+    }
+
+    private long randomArticleId() {
+        return articleIds[ThreadLocalRandom.current().nextInt(articleIds.length)];
+    }
+}
@@ -1,13 +1,12 @@
 package com.yyy.TourWeb;
 
+import com.yyy.TourWeb.tools.IdGenerator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.web.reactive.function.server.RouterFunction;
-import org.springframework.web.reactive.function.server.RouterFunctions;
 
 /**
  * 主类
@@ -24,7 +23,7 @@ public class TourWebApplication {
     }
 
     @Bean
-    RouterFunction<?> resourceRouter() {
-        return RouterFunctions.resources("/upload/**", new FileSystemResource("upload/"));
+    IdGenerator idGenerator(@Value("${tourweb.node-id:0}") long nodeId) {
+        return new IdGenerator(nodeId);
     }
 }
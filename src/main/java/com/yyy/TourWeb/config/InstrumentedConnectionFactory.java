@@ -0,0 +1,205 @@
+package com.yyy.TourWeb.config;
+
+import com.yyy.TourWeb.service.MetricsRegistry;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReactiveRedisClusterConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 记录每条Redis命令耗时和失败次数的连接，包装在实际的连接外面，ReactiveRedisTemplate的所有操作都经过这里。
+ * 命令名为 分组.方法，如 hash.hGet、scripting.evalSha；耗时从发出命令到结果（Flux为最后一个元素）返回
+ *
+ * @author yyy
+ */
+public class InstrumentedConnectionFactory implements ReactiveRedisConnectionFactory {
+
+    /**
+     * 代理类的构造方法，每次获取连接都要新建代理，不走 Proxy.newProxyInstance 的查找和检查
+     */
+    private static final ConcurrentMap<Class<?>, Constructor<?>> PROXY_CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private final ReactiveRedisConnectionFactory delegate;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final ConcurrentMap<Method, MetricsRegistry.CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    public InstrumentedConnectionFactory(ReactiveRedisConnectionFactory delegate, MetricsRegistry metricsRegistry) {
+        this.delegate = delegate;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * 未启用统计时返回原连接
+     *
+     * @param factory         连接
+     * @param metricsRegistry 统计
+     * @return 连接
+     */
+    public static ReactiveRedisConnectionFactory instrument(ReactiveRedisConnectionFactory factory, MetricsRegistry metricsRegistry) {
+        return metricsRegistry.isEnabled() ? new InstrumentedConnectionFactory(factory, metricsRegistry) : factory;
+    }
+
+    @Override
+    public ReactiveRedisConnection getReactiveConnection() {
+        return proxy(ReactiveRedisConnection.class, new ConnectionHandler(delegate.getReactiveConnection()));
+    }
+
+    @Override
+    public ReactiveRedisClusterConnection getReactiveClusterConnection() {
+        return delegate.getReactiveClusterConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    /**
+     * 连接：xxxCommands() 返回的命令接口再包装一层，ping() 直接计时
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final ReactiveRedisConnection connection;
+
+        ConnectionHandler(ReactiveRedisConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, connection, method, args);
+            }
+
+            Class<?> type = method.getReturnType();
+            if (type.isInterface() && method.getName().endsWith("Commands")) {
+                Object commands = invokeTarget(connection, method, args);
+                return commands == null ? null : proxy(type, new CommandsHandler(commands));
+            }
+            return timed(connection, method, args);
+        }
+    }
+
+    /**
+     * 命令接口：返回Mono/Flux的方法计时，其余方法直接调用
+     */
+    private class CommandsHandler implements InvocationHandler {
+
+        private final Object commands;
+
+        CommandsHandler(Object commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, commands, method, args);
+            }
+            return timed(commands, method, args);
+        }
+    }
+
+    private Object timed(Object target, Method method, Object[] args) throws Throwable {
+        Class<?> type = method.getReturnType();
+        boolean mono = Mono.class.isAssignableFrom(type);
+        if (!mono && !Flux.class.isAssignableFrom(type)) {
+            return invokeTarget(target, method, args);
+        }
+
+        MetricsRegistry.CommandMetrics metrics = metrics(method);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invokeTarget(target, method, args);
+        } catch (Throwable e) {
+            metrics.record(System.nanoTime() - start, true);
+            throw e;
+        }
+
+        if (result instanceof Mono) {
+            return ((Mono<?>) result).doFinally(signal -> metrics.record(System.nanoTime() - start, signal == SignalType.ON_ERROR));
+        }
+        if (result instanceof Flux) {
+            return ((Flux<?>) result).doFinally(signal -> metrics.record(System.nanoTime() - start, signal == SignalType.ON_ERROR));
+        }
+        return result;
+    }
+
+    private MetricsRegistry.CommandMetrics metrics(Method method) {
+        MetricsRegistry.CommandMetrics metrics = commands.get(method);
+        if (metrics == null) {
+            metrics = commands.computeIfAbsent(method, key -> metricsRegistry.command(commandName(key)));
+        }
+        return metrics;
+    }
+
+    /**
+     * ReactiveHashCommands.hGet -> hash.hGet
+     */
+    static String commandName(Method method) {
+        String group = method.getDeclaringClass().getSimpleName();
+        if (group.startsWith("Reactive")) {
+            group = group.substring("Reactive".length());
+        }
+        if (group.endsWith("Commands")) {
+            group = group.substring(0, group.length() - "Commands".length());
+        }
+        if (group.equals("RedisConnection")) {
+            return method.getName();
+        }
+        return Character.toLowerCase(group.charAt(0)) + group.substring(1) + "." + method.getName();
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return invokeTarget(target, method, args);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        Constructor<?> constructor = PROXY_CONSTRUCTORS.get(type);
+        if (constructor == null) {
+            constructor = PROXY_CONSTRUCTORS.computeIfAbsent(type, key -> {
+                try {
+                    return Proxy.getProxyClass(key.getClassLoader(), key).getConstructor(InvocationHandler.class);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        try {
+            return (T) constructor.newInstance(handler);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法创建 " + type.getName() + " 的代理", e);
+        }
+    }
+}
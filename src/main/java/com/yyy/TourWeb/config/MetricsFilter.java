@@ -0,0 +1,143 @@
+package com.yyy.TourWeb.config;
+
+import com.yyy.TourWeb.service.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 记录每个接口的耗时、状态码和处理中的请求数，排在其他过滤器之前，跨域预检请求也计入
+ *
+ * @author yyy
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MetricsFilter implements WebFilter {
+
+    /**
+     * 由处理方法指定的接口名，用于路径中不含变量、但取值很多的接口（如 /upload/**）
+     */
+    public static final String ROUTE_ATTRIBUTE = MetricsFilter.class.getName() + ".route";
+
+    /**
+     * 没有匹配任何接口的请求（404、跨域预检），接口名为 请求方法 + UNMATCHED
+     */
+    static final String UNMATCHED = "UNMATCHED";
+
+    private static final String ERROR_STATUS_ATTRIBUTE = MetricsFilter.class.getName() + ".errorStatus";
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        if (!metricsRegistry.isEnabled()) {
+            return chain.filter(exchange);
+        }
+
+        long start = System.nanoTime();
+        metricsRegistry.requestStarted();
+        return chain.filter(exchange)
+                .doOnError(e -> exchange.getAttributes().put(ERROR_STATUS_ATTRIBUTE, errorStatus(e)))
+                .doFinally(signal -> metricsRegistry.requestCompleted(route(exchange), status(exchange, signal), System.nanoTime() - start));
+    }
+
+    /**
+     * 出错时异常还未被转换为响应，按异常推算状态码
+     */
+    private static int errorStatus(Throwable e) {
+        return e instanceof ResponseStatusException ? ((ResponseStatusException) e).getStatus().value()
+                : HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    private static int status(ServerWebExchange exchange, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            return 0;
+        }
+        Integer errorStatus = exchange.getAttribute(ERROR_STATUS_ATTRIBUTE);
+        if (errorStatus != null) {
+            return errorStatus;
+        }
+        HttpStatus status = exchange.getResponse().getStatusCode();
+        return status != null ? status.value() : HttpStatus.OK.value();
+    }
+
+    /**
+     * 接口名：请求方法 + 路由的路径模板。
+     * 函数式路由（Spring 5.0）不记录匹配到的模板，这里把路径中等于路径变量值的段替换回 {变量名}
+     */
+    static String route(ServerWebExchange exchange) {
+        String route = exchange.getAttribute(ROUTE_ATTRIBUTE);
+        if (route != null) {
+            return route;
+        }
+
+        String method = exchange.getRequest().getMethodValue();
+        // 未经过路由（跨域预检），或没有匹配的路由及静态文件（以404异常结束）
+        Integer errorStatus = exchange.getAttribute(ERROR_STATUS_ATTRIBUTE);
+        if (exchange.getAttribute(RouterFunctions.REQUEST_ATTRIBUTE) == null
+                || (errorStatus != null && errorStatus == HttpStatus.NOT_FOUND.value())) {
+            return method + " " + UNMATCHED;
+        }
+        Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return method + " " + pattern;
+        }
+
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        Map<String, String> variables = exchange.getAttribute(RouterFunctions.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || variables.isEmpty()) {
+            return method + " " + path;
+        }
+
+        // 直接在路径字符串上逐段比较，不用 PathContainer.elements()（逐个元素做接口类型判断，比这里慢一个数量级）
+        StringBuilder result = new StringBuilder(method.length() + path.length() + 16).append(method).append(' ');
+        boolean escaped = path.indexOf('%') >= 0;
+        int start = 0;
+        while (true) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? path.length() : slash;
+            String name = end > start ? variableName(variables, path, start, end, escaped) : null;
+            if (name != null) {
+                result.append('{').append(name).append('}');
+            } else {
+                result.append(path, start, end);
+            }
+            if (slash < 0) {
+                return result.toString();
+            }
+            result.append('/');
+            start = slash + 1;
+        }
+    }
+
+    /**
+     * 路径中的一段对应的变量名，变量的值是解码后的，含转义字符的段先解码再比较
+     */
+    private static String variableName(Map<String, String> variables, String path, int start, int end, boolean escaped) {
+        String decoded = escaped ? StringUtils.uriDecode(path.substring(start, end), StandardCharsets.UTF_8) : null;
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            String value = variable.getValue();
+            boolean matches = decoded != null ? decoded.equals(value)
+                    : value.length() == end - start && path.regionMatches(start, value, 0, value.length());
+            if (matches) {
+                return variable.getKey();
+            }
+        }
+        return null;
+    }
+}
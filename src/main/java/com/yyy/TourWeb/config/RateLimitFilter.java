@@ -0,0 +1,113 @@
+package com.yyy.TourWeb.config;
+
+import com.yyy.TourWeb.service.RateLimitService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按来源IP限制写接口（POST）的请求频率，超出时返回429及 Retry-After。
+ * 排在MetricsFilter之后，被拒绝的请求也计入统计；按帐号的限流在各接口读取请求体后进行
+ *
+ * @author yyy
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RateLimitFilter implements WebFilter {
+
+    private static final String UNKNOWN_ADDRESS = "unknown";
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    /**
+     * 限流的路径，以 /* 结尾的按前缀匹配
+     */
+    @Value("${tourweb.ratelimit.paths:/api/user/login,/api/user/reg,/api/user/article,/api/user/comment/*}")
+    private String[] paths;
+
+    @Value("${tourweb.ratelimit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    private final Set<String> exactPaths = new HashSet<>();
+
+    private final List<String> pathPrefixes = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String path : paths) {
+            path = path.trim();
+            if (path.endsWith("/*")) {
+                pathPrefixes.add(path.substring(0, path.length() - 1));
+            } else if (!path.isEmpty()) {
+                exactPaths.add(path);
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!rateLimitService.isEnabled() || request.getMethod() != HttpMethod.POST || !limited(request.getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+
+        return rateLimitService.acquire(RateLimitService.Scope.IP, clientAddress(request))
+                .flatMap(waitMillis -> waitMillis > 0 ? reject(exchange.getResponse(), waitMillis) : chain.filter(exchange));
+    }
+
+    private boolean limited(String path) {
+        if (exactPaths.contains(path)) {
+            return true;
+        }
+        for (String prefix : pathPrefixes) {
+            if (path.length() > prefix.length() && path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 来源IP，前面有可信的反向代理时取 X-Forwarded-For 的第一个地址
+     */
+    private String clientAddress(ServerHttpRequest request) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return UNKNOWN_ADDRESS;
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, long waitMillis) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimitService.retryAfterSeconds(waitMillis)));
+        return response.setComplete();
+    }
+}
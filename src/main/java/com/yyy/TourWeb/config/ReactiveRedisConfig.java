@@ -1,31 +1,209 @@
 package com.yyy.TourWeb.config;
 
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.Comment;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.service.ArticleSearchSync;
+import com.yyy.TourWeb.service.EntityCache;
+import com.yyy.TourWeb.service.MetricsRegistry;
+import com.yyy.TourWeb.tools.JsonRedisSerializer;
+import com.yyy.TourWeb.tools.RedisKey;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.yyy.TourWeb.config.InstrumentedConnectionFactory.instrument;
+
+/**
+ * Redis连接，连接参数使用 spring.redis.*（单机或Sentinel），其余见 tourweb.redis.*。
+ * 配置了只读副本时，replica开头的模板从副本读取，未配置时与主节点的模板相同。
+ * 模板的连接都经过 {@link InstrumentedConnectionFactory}，记录每条命令的耗时
+ */
 @Configuration
+@EnableConfigurationProperties(RedisProperties.class)
 public class ReactiveRedisConfig {
 
+    @Value("${tourweb.redis.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${tourweb.redis.request-queue-size:10000}")
+    private int requestQueueSize;
+
+    @Value("${tourweb.redis.share-native-connection:true}")
+    private boolean shareNativeConnection;
+
     @Bean
-    public LettuceConnectionFactory lettuceConnectionFactory() {
-        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
-                .build();
+    @Primary
+    public LettuceConnectionFactory lettuceConnectionFactory(RedisProperties properties) {
+        if (properties.getCluster() != null && properties.getCluster().getNodes() != null && !properties.getCluster().getNodes().isEmpty()) {
+            // 新增文章、评论等Lua脚本同时操作多个key，在集群中会落在不同的slot上
+            throw new IllegalStateException("不支持Redis Cluster，请使用单机或Sentinel，读压力可通过 tourweb.redis.replicas 分担");
+        }
 
-        RedisStandaloneConfiguration standalone = new RedisStandaloneConfiguration("119.23.149.25", 6379);
-        standalone.setPassword(RedisPassword.of("daedalus"));
-        standalone.setDatabase(4);
+        LettuceConnectionFactory factory;
+        RedisProperties.Sentinel sentinel = properties.getSentinel();
+        if (sentinel != null && StringUtils.hasText(sentinel.getMaster())) {
+            RedisSentinelConfiguration config = new RedisSentinelConfiguration();
+            config.master(sentinel.getMaster());
+            for (String node : sentinel.getNodes()) {
+                String[] hostAndPort = hostAndPort(node);
+                config.sentinel(hostAndPort[0], Integer.valueOf(hostAndPort[1]));
+            }
+            config.setPassword(RedisPassword.of(properties.getPassword()));
+            config.setDatabase(properties.getDatabase());
+            factory = new LettuceConnectionFactory(config, clientConfiguration(properties));
+        } else {
+            factory = new LettuceConnectionFactory(standalone(properties, properties.getHost(), properties.getPort()), clientConfiguration(properties));
+        }
 
-        return new LettuceConnectionFactory(standalone, clientConfig);
+        // 响应式命令默认共用一个连接（Lettuce按请求流水线发送），关闭后每次获取连接都新建；订阅始终使用独立连接
+        factory.setShareNativeConnection(shareNativeConnection);
+        return factory;
     }
 
+    /**
+     * 只读副本，多个以逗号分隔的 host:port，与主节点使用相同的密码和库
+     */
     @Bean
-    public ReactiveRedisTemplate<String, String> reactiveRedisTemplate(LettuceConnectionFactory factory) {
-        return new ReactiveRedisTemplate<>(factory, RedisSerializationContext.string());
+    @ConditionalOnProperty(name = "tourweb.redis.replicas")
+    public ReplicaConnectionFactory replicaConnectionFactory(RedisProperties properties, @Value("${tourweb.redis.replicas}") String[] replicas) {
+        List<LettuceConnectionFactory> factories = new ArrayList<>();
+        for (String replica : replicas) {
+            if (!StringUtils.hasText(replica)) {
+                continue;
+            }
+
+            String[] hostAndPort = hostAndPort(replica.trim());
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                    standalone(properties, hostAndPort[0], Integer.parseInt(hostAndPort[1])), clientConfiguration(properties));
+            factory.setShareNativeConnection(shareNativeConnection);
+            factories.add(factory);
+        }
+        return new ReplicaConnectionFactory(factories);
+    }
+
+    @Bean
+    @Primary
+    public ReactiveRedisTemplate<String, String> reactiveRedisTemplate(LettuceConnectionFactory factory, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(factory, metricsRegistry), RedisSerializationContext.string());
+    }
+
+    /**
+     * 用户、文章、评论的模板，值直接在字节上做json读写，与字符串模板共用连接
+     */
+    @Bean
+    @Primary
+    public ReactiveRedisTemplate<String, User> userRedisTemplate(LettuceConnectionFactory factory, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(factory, metricsRegistry), JsonRedisSerializer.context(User.class));
+    }
+
+    @Bean
+    @Primary
+    public ReactiveRedisTemplate<String, Article> articleRedisTemplate(LettuceConnectionFactory factory, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(factory, metricsRegistry), JsonRedisSerializer.context(Article.class));
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, Comment> commentRedisTemplate(LettuceConnectionFactory factory, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(factory, metricsRegistry), JsonRedisSerializer.context(Comment.class));
+    }
+
+    /**
+     * 从副本读取的模板，只用于允许读到稍旧数据的查询（文章详情、用户信息、文章列表）
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, String> replicaRedisTemplate(LettuceConnectionFactory factory, ObjectProvider<ReplicaConnectionFactory> replicas, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(readFactory(factory, replicas), metricsRegistry), RedisSerializationContext.string());
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, User> userReplicaRedisTemplate(LettuceConnectionFactory factory, ObjectProvider<ReplicaConnectionFactory> replicas, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(readFactory(factory, replicas), metricsRegistry), JsonRedisSerializer.context(User.class));
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, Article> articleReplicaRedisTemplate(LettuceConnectionFactory factory, ObjectProvider<ReplicaConnectionFactory> replicas, MetricsRegistry metricsRegistry) {
+        return new ReactiveRedisTemplate<>(instrument(readFactory(factory, replicas), metricsRegistry), JsonRedisSerializer.context(Article.class));
+    }
+
+    /**
+     * 订阅缓存失效消息和新文章消息，订阅占用独立连接
+     */
+    @Bean
+    @ConditionalOnProperty(name = "tourweb.cache.sync-enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer cacheSyncListenerContainer(LettuceConnectionFactory factory, EntityCache entityCache,
+                                                                    ArticleSearchSync articleSearchSync) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        ChannelTopic topic = new ChannelTopic(RedisKey.of(RedisKey.CACHE_CHANNEL));
+        container.addMessageListener(entityCache, topic);
+        container.addMessageListener(articleSearchSync, topic);
+        return container;
+    }
+
+    /**
+     * 断线期间直接拒绝命令而不是无限排队，请求超时由 spring.redis.timeout 控制
+     */
+    private LettuceClientConfiguration clientConfiguration(RedisProperties properties) {
+        ClientOptions options = ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(Duration.ofMillis(connectTimeoutMs)).keepAlive(true).build())
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .requestQueueSize(requestQueueSize)
+                .build();
+
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder()
+                .clientOptions(options);
+        if (properties.getTimeout() != null) {
+            builder.commandTimeout(properties.getTimeout());
+        }
+        if (properties.getLettuce().getShutdownTimeout() != null) {
+            builder.shutdownTimeout(properties.getLettuce().getShutdownTimeout());
+        }
+        if (properties.isSsl()) {
+            builder.useSsl();
+        }
+        return builder.build();
+    }
+
+    private static RedisStandaloneConfiguration standalone(RedisProperties properties, String host, int port) {
+        RedisStandaloneConfiguration standalone = new RedisStandaloneConfiguration(host, port);
+        standalone.setPassword(RedisPassword.of(properties.getPassword()));
+        standalone.setDatabase(properties.getDatabase());
+        return standalone;
+    }
+
+    private static String[] hostAndPort(String node) {
+        int colon = node.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Redis节点格式应为 host:port：" + node);
+        }
+        return new String[]{node.substring(0, colon), node.substring(colon + 1)};
+    }
+
+    private static ReactiveRedisConnectionFactory readFactory(LettuceConnectionFactory factory, ObjectProvider<ReplicaConnectionFactory> replicas) {
+        ReplicaConnectionFactory replica = replicas.getIfAvailable();
+        return replica != null ? replica : factory;
     }
 }
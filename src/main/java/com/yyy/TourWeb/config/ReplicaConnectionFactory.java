@@ -0,0 +1,66 @@
+package com.yyy.TourWeb.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReactiveRedisClusterConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读副本的连接，多个副本之间轮流使用。
+ * spring-data-redis 2.0 的Lettuce连接不支持按读写分流（ReadFrom），这里为每个副本建立单独的连接，由读多写少的查询显式使用
+ *
+ * @author yyy
+ */
+public class ReplicaConnectionFactory implements ReactiveRedisConnectionFactory, InitializingBean, DisposableBean {
+
+    private final List<LettuceConnectionFactory> replicas;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaConnectionFactory(List<LettuceConnectionFactory> replicas) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个副本");
+        }
+        this.replicas = new ArrayList<>(replicas);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (LettuceConnectionFactory replica : replicas) {
+            replica.afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (LettuceConnectionFactory replica : replicas) {
+            replica.destroy();
+        }
+    }
+
+    @Override
+    public ReactiveRedisConnection getReactiveConnection() {
+        return nextReplica().getReactiveConnection();
+    }
+
+    @Override
+    public ReactiveRedisClusterConnection getReactiveClusterConnection() {
+        return nextReplica().getReactiveClusterConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return replicas.get(0).translateExceptionIfPossible(ex);
+    }
+
+    private LettuceConnectionFactory nextReplica() {
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.yyy.TourWeb.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.Collections;
+
+/**
+ * WebFlux编解码配置
+ *
+ * @author yyy
+ */
+@Configuration
+public class WebFluxConfig implements WebFluxConfigurer {
+
+    /**
+     * 换行分隔的json流，每行一个对象
+     */
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        Jackson2JsonEncoder ndjsonEncoder = new Jackson2JsonEncoder(objectMapper, APPLICATION_NDJSON);
+        ndjsonEncoder.setStreamingMediaTypes(Collections.singletonList(APPLICATION_NDJSON));
+        configurer.customCodecs().encoder(ndjsonEncoder);
+    }
+}
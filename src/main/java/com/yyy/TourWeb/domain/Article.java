@@ -2,12 +2,14 @@ package com.yyy.TourWeb.domain;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.ZonedDateTime;
 
 @Data
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Article {
@@ -18,6 +20,8 @@ public class Article {
 
     String content;
 
+    String excerpt;
+
     Integer clickCount;
 
     Integer commentCount;
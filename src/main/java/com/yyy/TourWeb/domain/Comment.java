@@ -11,6 +11,8 @@ import java.time.ZonedDateTime;
 @NoArgsConstructor
 public class Comment {
 
+    Long id;
+
     String content;
 
     String userAccount;
@@ -0,0 +1,77 @@
+package com.yyy.TourWeb.routes;
+
+import com.yyy.TourWeb.service.EntityCache;
+import com.yyy.TourWeb.service.MetricsRegistry;
+import com.yyy.TourWeb.tools.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.web.reactive.function.BodyInserters.fromObject;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.path;
+import static org.springframework.web.reactive.function.server.RouterFunctions.nest;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+/**
+ * 运行状态相关route
+ *
+ * @author yyy
+ */
+@Component
+public class MonitorRoute {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8");
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Bean
+    RouterFunction<?> monitorRoutes() {
+
+        return nest(path("/api/monitor"),
+                route(GET("/cache"), this::cacheStats)
+                        .andRoute(GET("/metrics"), this::metrics)
+                        .andRoute(GET("/metrics/prometheus"), this::prometheus)
+        );
+    }
+
+    /**
+     * 本地缓存命中、未命中、淘汰次数
+     *
+     * @param request 请求
+     * @return 响应
+     */
+    private Mono<ServerResponse> cacheStats(ServerRequest request) {
+        return ok().body(fromObject(Result.ok(entityCache.stats())));
+    }
+
+    /**
+     * 各接口及Redis命令的次数、耗时分位数（微秒）、状态码和失败次数
+     *
+     * @param request 请求
+     * @return 响应
+     */
+    private Mono<ServerResponse> metrics(ServerRequest request) {
+        return ok().body(fromObject(Result.ok(metricsRegistry.snapshot())));
+    }
+
+    /**
+     * 同上，Prometheus文本格式，供定时采集
+     *
+     * @param request 请求
+     * @return 响应
+     */
+    private Mono<ServerResponse> prometheus(ServerRequest request) {
+        return ok().contentType(PROMETHEUS_TEXT).body(fromObject(metricsRegistry.prometheus()));
+    }
+}
@@ -0,0 +1,153 @@
+package com.yyy.TourWeb.routes;
+
+import com.yyy.TourWeb.config.MetricsFilter;
+import com.yyy.TourWeb.service.ImageVariantService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.web.reactive.function.BodyInserters.fromResource;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.notFound;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+import static org.springframework.web.reactive.function.server.ServerResponse.status;
+
+/**
+ * 上传文件访问route，?w= 指定宽度时输出对应尺寸的缩略图。
+ * 上传的文件名唯一、内容不会改变，响应带长期缓存头和ETag，支持304和Range(206)；
+ * 文件内容由ResourceHttpMessageWriter以零拷贝（sendfile）方式输出
+ *
+ * @author yyy
+ */
+@Component
+public class UploadRoute {
+
+    private static final String PREFIX = "/upload/";
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * 按内容存放的文件路径结尾：[.variants/w宽度/]ab/cd/{SHA-256}.ext
+     */
+    private static final Pattern CONTENT_FILE = Pattern.compile("(?:/\\.variants/(w\\d+))?/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})\\.[a-z]+$");
+
+    /**
+     * 统计时所有文件计入同一个接口
+     */
+    private static final String METRICS_ROUTE = "GET " + PREFIX + "**";
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Bean
+    RouterFunction<?> uploadRoutes() {
+
+        return route(GET(PREFIX + "**"), this::file);
+    }
+
+    /**
+     * 输出上传的文件
+     *
+     * @param request 请求
+     * @return 响应
+     */
+    private Mono<ServerResponse> file(ServerRequest request) {
+        request.attributes().put(MetricsFilter.ROUTE_ATTRIBUTE, METRICS_ROUTE);
+        String name = request.path().substring(PREFIX.length());
+
+        return imageVariantService.find(name, width(request))
+                .flatMap(file -> write(request, file))
+                .switchIfEmpty(notFound().build());
+    }
+
+    /**
+     * 输出文件，If-None-Match / If-Modified-Since 命中时返回304。
+     * 按内容存放的文件以文件名中的SHA-256（及缩略图宽度）作ETag，不带 Last-Modified：
+     * 修改时间会因重复上传而刷新，只用于清理，不能作为内容是否变化的依据。
+     * 其它文件的ETag和 Last-Modified 用查找文件时已读取的大小和修改时间，不在事件循环线程上读取文件属性
+     *
+     * @param request 请求
+     * @param file    文件
+     * @return 响应
+     */
+    private Mono<ServerResponse> write(ServerRequest request, ImageVariantService.StoredFile file) {
+        String etag = contentEtag(file.getPath());
+        ZonedDateTime modified = null;
+        if (etag == null) {
+            etag = "\"" + Long.toHexString(file.getLastModified()) + "-" + Long.toHexString(file.getSize()) + "\"";
+            modified = ZonedDateTime.ofInstant(Instant.ofEpochMilli(file.getLastModified()), ZoneOffset.UTC);
+        }
+
+        if (notModified(request, etag, modified)) {
+            return headers(status(HttpStatus.NOT_MODIFIED), etag, modified).build();
+        }
+
+        // Range请求由ResourceHttpMessageWriter按区间输出206
+        return headers(ok(), etag, modified)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(fromResource(file.getResource()));
+    }
+
+    private static ServerResponse.BodyBuilder headers(ServerResponse.BodyBuilder builder, String etag, ZonedDateTime modified) {
+        builder.eTag(etag).header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (modified != null) {
+            builder.lastModified(modified);
+        }
+        return builder;
+    }
+
+    /**
+     * 按内容存放的文件（含缩略图）的ETag，其它文件为null
+     */
+    private static String contentEtag(Path path) {
+        Matcher matcher = CONTENT_FILE.matcher(path.toString().replace('\\', '/'));
+        if (!matcher.find()) {
+            return null;
+        }
+        return "\"" + matcher.group(2) + (matcher.group(1) != null ? "-" + matcher.group(1) : "") + "\"";
+    }
+
+    private static boolean notModified(ServerRequest request, String etag, ZonedDateTime modified) {
+        List<String> ifNoneMatch = request.headers().header(HttpHeaders.IF_NONE_MATCH);
+        if (!ifNoneMatch.isEmpty()) {
+            for (String value : ifNoneMatch) {
+                if (value.contains(etag) || "*".equals(value.trim())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (modified == null) {
+            return false;
+        }
+        long ifModifiedSince = request.headers().asHttpHeaders().getIfModifiedSince();
+        return ifModifiedSince != -1 && modified.toEpochSecond() <= ifModifiedSince / 1000;
+    }
+
+    private static Integer width(ServerRequest request) {
+        try {
+            return request.queryParam("w")
+                    .map(Integer::valueOf)
+                    .filter(w -> w > 0)
+                    .orElse(null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package com.yyy.TourWeb.routes;
 
+import com.yyy.TourWeb.config.WebFluxConfig;
 import com.yyy.TourWeb.domain.Article;
 import com.yyy.TourWeb.domain.Comment;
 import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.service.ArticleIndexes;
+import com.yyy.TourWeb.service.RateLimitService;
+import com.yyy.TourWeb.service.UploadService;
 import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.RawResult;
+import com.yyy.TourWeb.tools.Result;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 import static org.springframework.web.reactive.function.BodyExtractors.toMultipartData;
 import static org.springframework.web.reactive.function.BodyInserters.fromObject;
 import static org.springframework.web.reactive.function.server.RequestPredicates.*;
@@ -30,12 +46,30 @@ import static org.springframework.web.reactive.function.server.ServerResponse.*;
 @Component
 public class UserRoute {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_QUERY_LENGTH = 100;
+    /**
+     * multipart请求中文件以外部分（边界、头部）的预留字节数
+     */
+    private static final long MULTIPART_OVERHEAD_BYTES = 16 * 1024;
+
     @Autowired
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Value("${tourweb.raw-response.enabled:true}")
+    private boolean rawResponseEnabled;
+
     /**
      * 用户注册处理
      *
@@ -62,11 +96,27 @@ public class UserRoute {
         return request.bodyToMono(User.class)
                 .filter(user -> user.getAccount() != null)
                 .filter(user -> user.getPassword() != null)
-                .flatMap(userService::login)
-                .flatMap(o -> ok().body(fromObject(o)))
+                .flatMap(user -> limited(user.getAccount(), () -> userService.login(user)
+                        .flatMap(o -> ok().body(fromObject(o)))))
                 .switchIfEmpty(badRequest().build());
     }
 
+    /**
+     * 按帐号限流，超出时返回429
+     *
+     * @param account 帐号
+     * @param handler 通过时的处理
+     * @return 响应
+     */
+    private Mono<ServerResponse> limited(String account, Supplier<Mono<ServerResponse>> handler) {
+        return rateLimitService.acquire(RateLimitService.Scope.ACCOUNT, account)
+                .flatMap(waitMillis -> waitMillis > 0
+                        ? status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimitService.retryAfterSeconds(waitMillis)))
+                        .build()
+                        : handler.get());
+    }
+
     @Bean
     RouterFunction<?> userRoutes() {
 
@@ -74,22 +124,204 @@ public class UserRoute {
                 route(POST("/reg"), this::reg)
                         .andRoute(POST("/login"), this::login)
                         .andRoute(GET("/info/{account}"), this::info)
+                        .andRoute(POST("/info/batch"), this::infoBatch)
                         .andRoute(POST("/icon/upload").and(accept(MediaType.MULTIPART_FORM_DATA)), this::iconUpload)
                         .andRoute(POST("/icon/update/{account}"), this::iconUpdate)
                         .andRoute(POST("/password/{account}"), this::changePassword)
                         .andRoute(POST("/article"), this::addArticle)
                         .andRoute(GET("/article/{id}"), this::getArticle)
                         .andRoute(GET("/articles"), this::getAllArticle)
+                        .andRoute(POST("/articles/batch"), this::getArticleBatch)
+                        .andRoute(GET("/articles/search"), this::searchArticles)
+                        .andRoute(GET("/articles/filter"), this::filterArticles)
+                        .andRoute(GET("/articles/hot"), this::hotArticles)
+                        .andRoute(GET("/{account}/articles"), this::getUserArticles)
                         .andRoute(POST("/comment/{id}"), this::addComment)
+                        .andRoute(GET("/comment/{id}"), this::getComments)
         );
     }
 
+    /**
+     * 文章列表，默认按游标分页；
+     * Accept为 application/x-ndjson、application/stream+json 或 text/event-stream 时流式输出全部文章
+     *
+     * @param request 请求，可带 before、limit 参数
+     * @return 响应
+     */
     private Mono<ServerResponse> getAllArticle(ServerRequest request) {
-        return userService.getAllArticle()
+        MediaType streamType = streamingType(request);
+        if (streamType != null) {
+            return ok().contentType(streamType).body(userService.streamAllArticle(), Article.class);
+        }
+
+        Long before;
+        int limit;
+        try {
+            before = before(request);
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        return userService.getArticlePage(before, limit)
+                .flatMap(o -> ok().body(fromObject(o)))
+                .switchIfEmpty(status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    /**
+     * 批量获取文章
+     *
+     * @param request 请求，body为文章id数组，含null或超过数量上限时返回400
+     * @return 与请求顺序一致的文章
+     */
+    private Mono<ServerResponse> getArticleBatch(ServerRequest request) {
+        return request.bodyToMono(Long[].class)
+                .map(Arrays::asList)
+                // json中的null不能作为缓存和Redis的key
+                .filter(ids -> !ids.isEmpty() && ids.size() <= MAX_BATCH_SIZE && !ids.contains(null))
+                .flatMap(userService::getArticles)
+                .flatMap(o -> ok().body(fromObject(o)))
+                .switchIfEmpty(badRequest().build());
+    }
+
+    /**
+     * 按用户、分面筛选文章，按时间倒序分页
+     *
+     * @param request 请求，account为帐号，其余参数名为分面名（如 foreign=true）
+     * @return 文章分页
+     */
+    private Mono<ServerResponse> filterArticles(ServerRequest request) {
+        Long before;
+        int limit;
+        try {
+            before = before(request);
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        Map<String, String> facets = new LinkedHashMap<>();
+        for (String facet : ArticleIndexes.FACETS.keySet()) {
+            request.queryParam(facet).ifPresent(value -> facets.put(facet, value));
+        }
+
+        return userService.getFilteredArticlePage(request.queryParam("account").orElse(null), facets, before, limit)
+                .flatMap(o -> ok().body(fromObject(o)));
+    }
+
+    /**
+     * 热门文章
+     *
+     * @param request 请求，limit为数量
+     * @return 按热度从高到低的文章
+     */
+    private Mono<ServerResponse> hotArticles(ServerRequest request) {
+        int limit;
+        try {
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        return userService.getHotArticles(limit)
+                .flatMap(o -> ok().body(fromObject(o)));
+    }
+
+    /**
+     * 全文检索文章，按相关度分页
+     *
+     * @param request 请求，q为查询语句，offset为上一页返回的next
+     * @return 文章分页
+     */
+    private Mono<ServerResponse> searchArticles(ServerRequest request) {
+        String query = request.queryParam("q").map(String::trim).orElse("");
+        if (query.isEmpty() || query.length() > MAX_QUERY_LENGTH) {
+            return badRequest().build();
+        }
+
+        int offset;
+        int limit;
+        try {
+            offset = request.queryParam("offset").map(Integer::valueOf).orElse(0);
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        return userService.searchArticles(query, Math.max(0, offset), limit)
+                .flatMap(o -> ok().body(fromObject(o)));
+    }
+
+    /**
+     * 指定用户的文章，按时间倒序分页
+     *
+     * @param request 请求，可带 before、limit 参数
+     * @return 响应
+     */
+    private Mono<ServerResponse> getUserArticles(ServerRequest request) {
+        String account = request.pathVariable("account");
+        Long before;
+        int limit;
+        try {
+            before = before(request);
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        return userService.getUserArticlePage(account, before, limit)
                 .flatMap(o -> ok().body(fromObject(o)))
                 .switchIfEmpty(status(HttpStatus.INTERNAL_SERVER_ERROR).build());
     }
 
+    /**
+     * 文章评论，按时间倒序分页
+     *
+     * @param request 请求，可带 before、limit 参数
+     * @return 响应
+     */
+    private Mono<ServerResponse> getComments(ServerRequest request) {
+        Long id;
+        Long before;
+        int limit;
+        try {
+            id = Long.valueOf(request.pathVariable("id"));
+            before = before(request);
+            limit = limit(request);
+        } catch (NumberFormatException e) {
+            return badRequest().build();
+        }
+
+        return userService.getComments(id, before, limit)
+                .flatMap(o -> ok().body(fromObject(o)))
+                .switchIfEmpty(status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    private Long before(ServerRequest request) {
+        return request.queryParam("before").map(Long::valueOf).orElse(null);
+    }
+
+    private int limit(ServerRequest request) {
+        int limit = request.queryParam("limit").map(Integer::valueOf).orElse(DEFAULT_PAGE_SIZE);
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private MediaType streamingType(ServerRequest request) {
+        List<MediaType> accept = request.headers().accept();
+        for (MediaType type : accept) {
+            if (WebFluxConfig.APPLICATION_NDJSON.includes(type)) {
+                return WebFluxConfig.APPLICATION_NDJSON;
+            }
+            if (MediaType.APPLICATION_STREAM_JSON.includes(type)) {
+                return MediaType.APPLICATION_STREAM_JSON;
+            }
+            if (MediaType.TEXT_EVENT_STREAM.includes(type)) {
+                return MediaType.TEXT_EVENT_STREAM;
+            }
+        }
+        return null;
+    }
+
     /**
      * 新增评论
      *
@@ -101,8 +333,8 @@ public class UserRoute {
                 .filter(comment -> comment.getArticleId() != null)
                 .filter(comment -> comment.getContent() != null && !comment.getContent().isEmpty())
                 .filter(comment -> comment.getUserAccount() != null && !comment.getUserAccount().isEmpty())
-                .flatMap(comment -> userService.addComment(comment))
-                .flatMap(o -> ok().body(fromObject(o)))
+                .flatMap(comment -> limited(comment.getUserAccount(), () -> userService.addComment(comment)
+                        .flatMap(o -> ok().body(fromObject(o)))))
                 .switchIfEmpty(badRequest().build());
     }
 
@@ -115,6 +347,11 @@ public class UserRoute {
     private Mono<ServerResponse> getArticle(ServerRequest request) {
         Long id = Long.valueOf(request.pathVariable("id"));
 
+        if (rawResponseEnabled) {
+            return userService.getArticleRaw(id)
+                    .flatMap(raw -> writeRaw(request, raw));
+        }
+
         return userService.getArticle(id)
                 .flatMap(o -> ok().body(fromObject(o)))
                 .switchIfEmpty(status(HttpStatus.INTERNAL_SERVER_ERROR).build());
@@ -132,8 +369,8 @@ public class UserRoute {
                 .filter(article -> article.getTitle() != null && !article.getTitle().isEmpty())
                 .filter(article -> article.getContent() != null && !article.getContent().isEmpty())
                 .filter(article -> article.getUserAccount() != null && !article.getUserAccount().isEmpty())
-                .flatMap(article -> userService.addArticle(article))
-                .flatMap(o -> ok().body(fromObject(o)))
+                .flatMap(article -> limited(article.getUserAccount(), () -> userService.addArticle(article)
+                        .flatMap(o -> ok().body(fromObject(o)))))
                 .switchIfEmpty(badRequest().build());
     }
 
@@ -175,6 +412,12 @@ public class UserRoute {
      * @return
      */
     private Mono<ServerResponse> iconUpload(ServerRequest request) {
+        // 请求体明显超过上限时不读取，直接拒绝
+        long contentLength = request.headers().contentLength().orElse(-1);
+        if (contentLength > uploadService.getMaxBytes() + MULTIPART_OVERHEAD_BYTES) {
+            return ok().body(fromObject(Result.error(4, "文件过大")));
+        }
+
         return request.body(toMultipartData())
                 .filter(data -> !data.isEmpty())
                 .flatMap(userService::iconUpload)
@@ -191,9 +434,52 @@ public class UserRoute {
     private Mono<ServerResponse> info(ServerRequest request) {
         String account = request.pathVariable("account");
 
+        if (rawResponseEnabled) {
+            return userService.getInfoRaw(account)
+                    .flatMap(raw -> writeRaw(request, raw));
+        }
+
         return userService.getInfo(account)
                 .flatMap(o -> ok().body(fromObject(o)))
                 .switchIfEmpty(status(HttpStatus.INTERNAL_SERVER_ERROR).build());
 
     }
+
+    /**
+     * 批量获取用户信息
+     *
+     * @param request 请求，body为帐号数组，含null或超过数量上限时返回400
+     * @return 与请求顺序一致的用户信息
+     */
+    private Mono<ServerResponse> infoBatch(ServerRequest request) {
+        return request.bodyToMono(String[].class)
+                .map(Arrays::asList)
+                .filter(accounts -> !accounts.isEmpty() && accounts.size() <= MAX_BATCH_SIZE && !accounts.contains(null))
+                .flatMap(userService::getInfos)
+                .flatMap(o -> ok().body(fromObject(o)))
+                .switchIfEmpty(badRequest().build());
+    }
+
+    /**
+     * 输出序列化好的响应体，If-None-Match 命中时返回304（GET用弱比较，忽略 W/ 前缀）
+     *
+     * @param request 请求
+     * @param raw     响应体
+     * @return 响应
+     */
+    private Mono<ServerResponse> writeRaw(ServerRequest request, RawResult raw) {
+        List<String> ifNoneMatch = request.headers().header(HttpHeaders.IF_NONE_MATCH);
+        String etag = raw.opaqueEtag();
+        for (String value : ifNoneMatch) {
+            if (value.contains(etag) || "*".equals(value.trim())) {
+                return status(HttpStatus.NOT_MODIFIED).eTag(raw.getEtag()).build();
+            }
+        }
+
+        return ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(raw.getEtag())
+                .body((ReactiveHttpOutputMessage message, BodyInserter.Context context) ->
+                        // 直接包装缓存中的字节数组，不再分配和复制响应体
+                        message.writeWith(raw.toDataBuffers(message.bufferFactory())));
+    }
 }
@@ -0,0 +1,144 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.CompressedStringSerializer;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_BODY;
+
+/**
+ * 文章正文，与文章其它字段分开存放在ArticleBodies中，列表只读取Articles中的摘要，打开文章时再读取正文。
+ * 较长的正文压缩存放（见 {@link CompressedStringSerializer}）；
+ * 旧数据的正文仍在Articles的json中，启动时由 {@link ArticleIndexInitializer} 迁移
+ *
+ * @author yyy
+ */
+@Service
+public class ArticleBodyStore {
+
+    /**
+     * 摘要长度（字符）
+     */
+    static final int EXCERPT_LENGTH = 100;
+
+    /**
+     * 只借用连接（已记录命令耗时），序列化方式不同
+     */
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    @Qualifier("replicaRedisTemplate")
+    private ReactiveRedisTemplate<String, String> replicaRedisTemplate;
+
+    @Value("${tourweb.article.body-compress-threshold:2048}")
+    private int compressThreshold;
+
+    private CompressedStringSerializer serializer;
+
+    private ReactiveRedisTemplate<String, String> template;
+
+    /**
+     * 读取正文用，配置了只读副本时从副本读取
+     */
+    private ReactiveRedisTemplate<String, String> readTemplate;
+
+    @PostConstruct
+    public void init() {
+        serializer = new CompressedStringSerializer(compressThreshold);
+        CompressedStringSerializer body = serializer;
+        RedisSerializationContext.SerializationPair<String> string =
+                RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer());
+
+        RedisSerializationContext<String, String> context = RedisSerializationContext.<String, String>newSerializationContext()
+                .key(string)
+                .value(body, body)
+                .hashKey(string)
+                .hashValue(body, body)
+                .build();
+
+        template = new ReactiveRedisTemplate<>(redisTemplate.getConnectionFactory(), context);
+        readTemplate = new ReactiveRedisTemplate<>(replicaRedisTemplate.getConnectionFactory(), context);
+    }
+
+    /**
+     * 保存正文
+     *
+     * @param id      文章id
+     * @param content 正文
+     * @return 处理结果
+     */
+    public Mono<Boolean> put(Long id, String content) {
+        return template.<String, String>opsForHash().put(RedisKey.of(ARTICLE_BODY), id.toString(), content);
+    }
+
+    /**
+     * 按存放格式编码正文（较长的压缩），供在脚本中与文章一起写入
+     *
+     * @param content 正文
+     * @return 编码后的正文
+     */
+    public ByteBuffer encode(String content) {
+        return serializer.write(content);
+    }
+
+    /**
+     * 读取正文
+     *
+     * @param id 文章id
+     * @return 正文，不存在时为空
+     */
+    public Mono<String> get(Long id) {
+        return readTemplate.<String, String>opsForHash().get(RedisKey.of(ARTICLE_BODY), id.toString());
+    }
+
+    /**
+     * 从主节点读取正文，刚写入的正文在副本上可能还读不到
+     *
+     * @param id 文章id
+     * @return 正文，不存在时为空
+     */
+    public Mono<String> getLatest(Long id) {
+        return template.<String, String>opsForHash().get(RedisKey.of(ARTICLE_BODY), id.toString());
+    }
+
+    /**
+     * 列表中返回的文章：不含正文，带摘要；旧数据没有摘要时由正文生成
+     *
+     * @param article 文章
+     * @return 副本
+     */
+    public static Article summary(Article article) {
+        String excerpt = article.getExcerpt() != null ? article.getExcerpt() : excerpt(article.getContent());
+        return article.toBuilder().content(null).excerpt(excerpt).build();
+    }
+
+    /**
+     * 摘要：连续的空白合并为一个空格，超出长度的截断并加省略号，不截断代理对
+     *
+     * @param content 正文
+     * @return 摘要，正文为null时为null
+     */
+    public static String excerpt(String content) {
+        if (content == null) {
+            return null;
+        }
+
+        String text = content.replaceAll("\\s+", " ").trim();
+        if (text.codePointCount(0, text.length()) <= EXCERPT_LENGTH) {
+            return text;
+        }
+        return text.substring(0, text.offsetByCodePoints(0, EXCERPT_LENGTH)) + "…";
+    }
+}
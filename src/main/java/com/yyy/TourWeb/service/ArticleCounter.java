@@ -0,0 +1,198 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_CLICK_COUNT;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_COMMENT_COUNT;
+
+/**
+ * 文章点击数、评论数计数器。
+ * 计数存放在独立的hash中（field为文章id），点击数本地先用LongAdder累加，定时批量HINCRBY写回（同时增加热门排行分数），
+ * 读取时把Redis中的值与本地尚未写回的增量合并；评论数由新增评论的脚本直接增加，读取时直接使用Redis中的值
+ *
+ * @author yyy
+ */
+@Service
+public class ArticleCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleCounter.class);
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private HotArticleRanking hotArticleRanking;
+
+    private final Pending clicks = new Pending(RedisKey.of(ARTICLE_CLICK_COUNT));
+
+    /**
+     * 记录一次浏览
+     *
+     * @param id 文章id
+     */
+    public void click(Long id) {
+        clicks.increment(id);
+    }
+
+    /**
+     * 旧文章的计数写在json里，迁移到计数hash中（已存在则不覆盖）
+     *
+     * @param article 从json读出的文章
+     * @return 完成信号
+     */
+    public Mono<Void> seed(Article article) {
+        String id = article.getId().toString();
+        String clickCount = String.valueOf(article.getClickCount() == null ? 0 : article.getClickCount());
+        String commentCount = String.valueOf(article.getCommentCount() == null ? 0 : article.getCommentCount());
+
+        return Mono.when(redisTemplate.opsForHash().putIfAbsent(RedisKey.of(ARTICLE_CLICK_COUNT), id, clickCount),
+                redisTemplate.opsForHash().putIfAbsent(RedisKey.of(ARTICLE_COMMENT_COUNT), id, commentCount));
+    }
+
+    /**
+     * 把最新计数写入文章；Redis中没有计数的旧文章沿用json中的值
+     *
+     * @param articles 文章
+     * @return 填充计数后的文章
+     */
+    public Mono<List<Article>> fill(List<Article> articles) {
+        if (articles.isEmpty()) {
+            return Mono.just(articles);
+        }
+
+        List<String> ids = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            ids.add(article.getId().toString());
+        }
+
+        return Mono.zip(clicks.load(ids), loadComments(ids))
+                .map(counts -> {
+                    for (int i = 0; i < articles.size(); i++) {
+                        Article article = articles.get(i);
+                        article.setClickCount(clicks.merge(article.getId(), counts.getT1().get(i), article.getClickCount()));
+                        article.setCommentCount(parse(counts.getT2().get(i), article.getCommentCount()));
+                    }
+                    return articles;
+                });
+    }
+
+    /**
+     * 单篇文章的最新计数
+     *
+     * @param id 文章id
+     * @return {点击数, 评论数}
+     */
+    public Mono<int[]> counts(Long id) {
+        List<String> ids = Collections.singletonList(id.toString());
+
+        return Mono.zip(clicks.load(ids), loadComments(ids))
+                .map(counts -> new int[]{
+                        clicks.merge(id, counts.getT1().get(0), 0),
+                        parse(counts.getT2().get(0), 0)
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${tourweb.counter.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        clicks.flush().block();
+    }
+
+    private Mono<List<String>> loadComments(List<String> ids) {
+        return RedisScripts.hmget(redisTemplate, RedisKey.of(ARTICLE_COMMENT_COUNT), ids);
+    }
+
+    private static int parse(String stored, Integer fallback) {
+        return stored != null ? Integer.parseInt(stored) : (fallback != null ? fallback : 0);
+    }
+
+    /**
+     * 点击数的本地增量，写回时同时增加热门排行分数。
+     * 每次写回时换上新的map，旧map在本次和下一次写回时各排空一次，
+     * 这样写回前刚拿到旧map的线程所做的累加也不会丢失
+     */
+    private class Pending {
+
+        private final String redisKey;
+
+        private volatile ConcurrentHashMap<Long, LongAdder> current = new ConcurrentHashMap<>();
+
+        private ConcurrentHashMap<Long, LongAdder> retired = new ConcurrentHashMap<>();
+
+        Pending(String redisKey) {
+            this.redisKey = redisKey;
+        }
+
+        void increment(Long id) {
+            current.computeIfAbsent(id, k -> new LongAdder()).increment();
+        }
+
+        Mono<List<String>> load(List<String> ids) {
+            return RedisScripts.hmget(redisTemplate, redisKey, ids);
+        }
+
+        int merge(Long id, String stored, Integer fallback) {
+            long value = stored != null ? Long.parseLong(stored) : (fallback != null ? fallback : 0);
+            LongAdder adder = current.get(id);
+            if (adder != null) {
+                value += adder.sum();
+            }
+            return (int) value;
+        }
+
+        synchronized Mono<Void> flush() {
+            ConcurrentHashMap<Long, LongAdder> drained = current;
+            current = new ConcurrentHashMap<>();
+
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(hotArticleRanking.getClickWeight()));
+            drain(retired, args);
+            drain(drained, args);
+            retired = drained;
+
+            if (args.size() == 1) {
+                return Mono.empty();
+            }
+
+            return redisTemplate.execute(RedisScripts.HINCRBY_BATCH, Arrays.asList(redisKey, RedisKey.of(ARTICLE_HOT)), args)
+                    .then()
+                    .onErrorResume(e -> {
+                        log.error("[计数] 写回失败，稍后重试：" + e.getMessage());
+                        for (int i = 1; i < args.size(); i += 2) {
+                            current.computeIfAbsent(Long.valueOf(args.get(i)), k -> new LongAdder())
+                                    .add(Long.parseLong(args.get(i + 1)));
+                        }
+                        return Mono.empty();
+                    });
+        }
+
+        private void drain(Map<Long, LongAdder> map, List<String> args) {
+            for (Map.Entry<Long, LongAdder> entry : map.entrySet()) {
+                long delta = entry.getValue().sumThenReset();
+                if (delta != 0) {
+                    args.add(entry.getKey().toString());
+                    args.add(String.valueOf(delta));
+                }
+            }
+        }
+    }
+}
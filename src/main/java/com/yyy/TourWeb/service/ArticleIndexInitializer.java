@@ -0,0 +1,140 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE;
+
+/**
+ * 启动时用HSCAN扫描Articles，补齐文章的各个索引（见 {@link ArticleIndexes}）和计数（旧数据没有写入过），
+ * 把旧数据json中的正文迁移到 {@link ArticleBodyStore}，并建立进程内的全文检索索引
+ *
+ * @author yyy
+ */
+@Component
+public class ArticleIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleIndexInitializer.class);
+
+    private static final String SCAN_COUNT = "200";
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ArticleCounter articleCounter;
+
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    @Autowired
+    private ArticleBodyStore articleBodyStore;
+
+    @Value("${tourweb.index.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    @Value("${tourweb.search.build-on-startup:true}")
+    private boolean buildSearchOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!rebuildOnStartup && !buildSearchOnStartup) {
+            return;
+        }
+
+        scan()
+                .flatMap(this::index)
+                .count()
+                .subscribe(n -> log.info("[文章索引] 重建完成，共{}篇，检索索引{}篇", n, articleSearchIndex.size()),
+                        e -> log.error("[文章索引] 重建失败：" + e.getMessage()));
+    }
+
+    /**
+     * 分批扫描Articles，每批只占用Redis很短的时间
+     *
+     * @return 文章id与json
+     */
+    private Flux<String[]> scan() {
+        String redisKey = RedisKey.of(ARTICLE);
+
+        return scanPage(redisKey, "0")
+                .expand(page -> "0".equals(page.get(0)) ? Mono.empty() : scanPage(redisKey, page.get(0)))
+                .flatMapIterable(page -> {
+                    String[][] entries = new String[(page.size() - 1) / 2][];
+                    for (int i = 0; i < entries.length; i++) {
+                        entries[i] = new String[]{page.get(2 * i + 1), page.get(2 * i + 2)};
+                    }
+                    return Arrays.asList(entries);
+                });
+    }
+
+    private Mono<List<String>> scanPage(String redisKey, String cursor) {
+        return redisTemplate.execute(RedisScripts.HSCAN, Collections.singletonList(redisKey), Arrays.asList(cursor, SCAN_COUNT))
+                .next();
+    }
+
+    private Mono<Boolean> index(String[] entry) {
+        String id = entry[0];
+        Article article = JsonUtils.toObject(entry[1], Article.class);
+        if (article == null) {
+            return Mono.just(false);
+        }
+
+        // 正文已单独存放的，建立检索索引时需要读取正文
+        Mono<Article> withBody = article.getContent() != null || !buildSearchOnStartup
+                ? Mono.just(article)
+                : articleBodyStore.get(article.getId()).map(body -> article.toBuilder().content(body).build()).defaultIfEmpty(article);
+
+        return withBody
+                .doOnNext(full -> {
+                    if (buildSearchOnStartup) {
+                        articleSearchIndex.add(full);
+                    }
+                })
+                .flatMap(full -> {
+                    if (!rebuildOnStartup) {
+                        return Mono.just(true);
+                    }
+
+                    return Flux.fromIterable(ArticleIndexes.keys(article))
+                            .flatMap(key -> redisTemplate.opsForZSet().add(key, id, Double.parseDouble(id)))
+                            .then(articleCounter.seed(article))
+                            .then(migrateBody(article))
+                            .thenReturn(true);
+                });
+    }
+
+    /**
+     * 旧数据的正文在json中：先写入正文，再去掉json中的正文、补上摘要。
+     * 计数在此之前已写入计数器，json中的计数一并去掉
+     *
+     * @param article 文章
+     * @return 完成信号
+     */
+    private Mono<Void> migrateBody(Article article) {
+        if (article.getContent() == null) {
+            return Mono.empty();
+        }
+
+        Article meta = ArticleBodyStore.summary(article).toBuilder().clickCount(null).commentCount(null).build();
+        return articleBodyStore.put(article.getId(), article.getContent())
+                .then(redisTemplate.opsForHash().put(RedisKey.of(ARTICLE), article.getId().toString(), JsonUtils.toString(meta)))
+                .then();
+    }
+}
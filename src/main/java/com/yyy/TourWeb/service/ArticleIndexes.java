@@ -0,0 +1,68 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.RedisKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_FACET;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_TIMELINE;
+import static com.yyy.TourWeb.tools.RedisKey.USER_ARTICLE;
+
+/**
+ * 文章所属的按时间排序的索引（ZSET，score为文章id）：全部文章、用户的文章、各分面（如国内/国外）。
+ * 增加分面（地区、标签等）只需在 {@link #FACETS} 中加一项，新文章写入时和启动补齐时都会用到
+ *
+ * @author yyy
+ */
+public final class ArticleIndexes {
+
+    /**
+     * 分面名 -> 取值方法，值为null的文章不进入该分面
+     */
+    public static final Map<String, Function<Article, Object>> FACETS;
+
+    static {
+        Map<String, Function<Article, Object>> facets = new LinkedHashMap<>();
+        facets.put("foreign", Article::getIsForeign);
+        FACETS = Collections.unmodifiableMap(facets);
+    }
+
+    private ArticleIndexes() {
+    }
+
+    /**
+     * 文章所属的全部索引
+     *
+     * @param article 文章
+     * @return ZSET的key
+     */
+    public static List<String> keys(Article article) {
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisKey.of(ARTICLE_TIMELINE));
+        keys.add(RedisKey.of(USER_ARTICLE, article.getUserAccount()));
+        for (Map.Entry<String, Function<Article, Object>> facet : FACETS.entrySet()) {
+            Object value = facet.getValue().apply(article);
+            if (value != null) {
+                keys.add(facetKey(facet.getKey(), value.toString()));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 分面索引的key
+     *
+     * @param facet 分面名
+     * @param value 分面值
+     * @return ZSET的key
+     */
+    public static String facetKey(String facet, String value) {
+        return RedisKey.of(ARTICLE_FACET, facet, value.toLowerCase());
+    }
+}
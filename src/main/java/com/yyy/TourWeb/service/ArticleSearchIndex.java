@@ -0,0 +1,145 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.Tokenizer;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文章标题、内容的进程内倒排索引，按BM25排序，多个词之间为“与”的关系。
+ * 新增文章时增量加入（其它实例新增的文章由 {@link ArticleSearchSync} 加入），启动时由 {@link ArticleIndexInitializer} 扫描全部文章重建；
+ * 文章没有修改接口，同一id只加入一次
+ *
+ * @author yyy
+ */
+@Service
+public class ArticleSearchIndex {
+
+    /**
+     * 标题中的词按出现多次计
+     */
+    private static final int TITLE_WEIGHT = 3;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 一次查询最多返回的结果数
+     */
+    private static final int MAX_RESULTS = 1000;
+
+    /**
+     * 词 -> (文章id -> 词频)
+     */
+    private final Map<String, Map<Long, Integer>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 文章id -> 文章长度（词数）
+     */
+    private final Map<Long, Integer> lengths = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * 加入索引
+     *
+     * @param article 文章
+     */
+    public void add(Article article) {
+        Long id = article.getId();
+        if (id == null || lengths.containsKey(id)) {
+            return;
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : Tokenizer.tokenize(article.getTitle())) {
+            frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : Tokenizer.tokenize(article.getContent())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put(id, entry.getValue());
+            length += entry.getValue();
+        }
+        if (lengths.putIfAbsent(id, length) == null) {
+            totalLength.addAndGet(length);
+        }
+    }
+
+    /**
+     * 查询
+     *
+     * @param query 查询语句
+     * @return 按相关度从高到低排列的文章id
+     */
+    public List<Long> search(String query) {
+        List<Map<Long, Integer>> lists = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(Tokenizer.tokenize(query))) {
+            Map<Long, Integer> list = postings.get(token);
+            if (list == null) {
+                return new ArrayList<>();
+            }
+            lists.add(list);
+        }
+        if (lists.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 从最短的倒排表开始求交集
+        lists.sort(Comparator.comparingInt(Map::size));
+        int docCount = Math.max(1, lengths.size());
+        double avgLength = Math.max(1D, (double) totalLength.get() / docCount);
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (Long id : lists.get(0).keySet()) {
+            Integer length = lengths.get(id);
+            if (length == null) {
+                continue;
+            }
+
+            double score = 0;
+            for (Map<Long, Integer> list : lists) {
+                Integer tf = list.get(id);
+                if (tf == null) {
+                    score = -1;
+                    break;
+                }
+                double idf = Math.log(1 + (docCount - list.size() + 0.5) / (list.size() + 0.5));
+                score += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+            }
+            if (score >= 0) {
+                scores.put(id, score);
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(scores.keySet());
+        // 相关度相同时新文章在前
+        ids.sort(Comparator.comparing((Long id) -> scores.get(id)).reversed().thenComparing(Comparator.reverseOrder()));
+        return ids.size() > MAX_RESULTS ? new ArrayList<>(ids.subList(0, MAX_RESULTS)) : ids;
+    }
+
+    /**
+     * 是否已加入索引
+     *
+     * @param id 文章id
+     * @return 是否已加入
+     */
+    public boolean contains(Long id) {
+        return lengths.containsKey(id);
+    }
+
+    public int size() {
+        return lengths.size();
+    }
+}
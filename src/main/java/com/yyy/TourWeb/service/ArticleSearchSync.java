@@ -0,0 +1,93 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE;
+import static com.yyy.TourWeb.tools.RedisKey.CACHE_CHANNEL;
+
+/**
+ * 在各实例间同步全文检索索引：新增文章后在缓存失效的频道上发布 "article-created:{id}"，
+ * 每个实例收到后从主节点读取文章和正文加入本地的 {@link ArticleSearchIndex}（已加入的跳过，包括发布者自己）
+ *
+ * @author yyy
+ */
+@Service
+public class ArticleSearchSync implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleSearchSync.class);
+
+    private static final String CREATED_PREFIX = "article-created:";
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    @Autowired
+    private ArticleBodyStore articleBodyStore;
+
+    /**
+     * 通知所有实例把新文章加入检索索引
+     *
+     * @param id 文章id
+     * @return 完成信号
+     */
+    public Mono<Void> publishCreated(Long id) {
+        return redisTemplate.execute(RedisScripts.PUBLISH,
+                Collections.singletonList(RedisKey.of(CACHE_CHANNEL)), Collections.singletonList(CREATED_PREFIX + id))
+                .doOnError(e -> log.error("[检索同步] 发布新文章消息失败：" + e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!body.startsWith(CREATED_PREFIX)) {
+            return;
+        }
+
+        Long id;
+        try {
+            id = Long.valueOf(body.substring(CREATED_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            log.warn("[检索同步] 无法识别的消息：" + body);
+            return;
+        }
+        if (articleSearchIndex.contains(id)) {
+            return;
+        }
+
+        load(id).subscribe(articleSearchIndex::add,
+                e -> log.error("[检索同步] 读取文章" + id + "失败：" + e.getMessage()));
+    }
+
+    /**
+     * 从主节点读取文章和正文，文章刚写入，副本上可能还没有
+     *
+     * @param id 文章id
+     * @return 含正文的文章
+     */
+    private Mono<Article> load(Long id) {
+        return redisTemplate.<String, String>opsForHash().get(RedisKey.of(ARTICLE), id.toString())
+                .flatMap(json -> Mono.justOrEmpty(JsonUtils.toObject(json, Article.class)))
+                .flatMap(article -> article.getContent() != null
+                        ? Mono.just(article)
+                        : articleBodyStore.getLatest(id).map(content -> article.toBuilder().content(content).build()).defaultIfEmpty(article));
+    }
+}
@@ -0,0 +1,267 @@
+package com.yyy.TourWeb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.tools.RawResult;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.yyy.TourWeb.tools.RedisKey.CACHE_CHANNEL;
+
+/**
+ * 文章、用户的进程内缓存（Caffeine，W-TinyLFU淘汰），缓存已反序列化的对象及序列化好的响应体。
+ * 失效时通过Redis pub/sub通知其它实例，消息格式为 "article:{id}" 或 "user:{account}"。
+ * 每次失效使该key的代数加一，从Redis加载的数据只有在加载期间代数未变时才留在缓存中，
+ * 避免失效前开始的加载（或从尚未同步的副本读到的旧数据）在失效后写回缓存
+ *
+ * @author yyy
+ */
+@Service
+public class EntityCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+
+    private static final String ARTICLE_PREFIX = "article:";
+    private static final String USER_PREFIX = "user:";
+
+    /**
+     * 失效代数按key的哈希分段记录，段数为2的幂；不同key落在同一段只会多放弃一次写入
+     */
+    private static final int GENERATION_STRIPES = 4096;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Value("${tourweb.cache.article.max-size:10000}")
+    private long articleMaxSize;
+
+    @Value("${tourweb.cache.user.max-size:10000}")
+    private long userMaxSize;
+
+    @Value("${tourweb.cache.response.max-bytes:67108864}")
+    private long responseMaxBytes;
+
+    @Value("${tourweb.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<Long, Article> articles;
+
+    private Cache<String, User> users;
+
+    private Cache<Long, RawResult> articleResponses;
+
+    private Cache<String, RawResult> userResponses;
+
+    private final AtomicLongArray articleGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLongArray userGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @PostConstruct
+    public void init() {
+        articles = Caffeine.newBuilder()
+                .maximumSize(articleMaxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        users = Caffeine.newBuilder()
+                .maximumSize(userMaxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        articleResponses = Caffeine.newBuilder()
+                .maximumWeight(responseMaxBytes / 2)
+                .weigher((Long id, RawResult raw) -> raw.getBody().length)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        userResponses = Caffeine.newBuilder()
+                .maximumWeight(responseMaxBytes / 2)
+                .weigher((String account, RawResult raw) -> raw.getBody().length)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public Article getArticle(Long id) {
+        return articles.getIfPresent(id);
+    }
+
+    /**
+     * 文章的失效代数，从Redis加载前取得，写入缓存时传入
+     *
+     * @param id 文章id
+     * @return 代数
+     */
+    public long articleGeneration(Long id) {
+        return articleGenerations.get(stripe(id));
+    }
+
+    /**
+     * 写入加载的文章，加载期间文章被失效过时放弃
+     *
+     * @param article    文章
+     * @param generation 加载前取得的代数
+     */
+    public void putArticle(Article article, long generation) {
+        articles.put(article.getId(), article);
+        if (articleGeneration(article.getId()) != generation) {
+            articles.invalidate(article.getId());
+        }
+    }
+
+    public RawResult getArticleResponse(Long id) {
+        return articleResponses.getIfPresent(id);
+    }
+
+    public void putArticleResponse(Long id, RawResult raw, long generation) {
+        articleResponses.put(id, raw);
+        if (articleGeneration(id) != generation) {
+            articleResponses.invalidate(id);
+        }
+    }
+
+    public User getUser(String account) {
+        return users.getIfPresent(account);
+    }
+
+    /**
+     * 用户的失效代数，从Redis加载前取得，写入缓存时传入
+     *
+     * @param account 帐号
+     * @return 代数
+     */
+    public long userGeneration(String account) {
+        return userGenerations.get(stripe(account));
+    }
+
+    /**
+     * 写入加载的用户，加载期间用户被失效过时放弃
+     *
+     * @param user       用户
+     * @param generation 加载前取得的代数
+     */
+    public void putUser(User user, long generation) {
+        users.put(user.getAccount(), user);
+        if (userGeneration(user.getAccount()) != generation) {
+            users.invalidate(user.getAccount());
+        }
+    }
+
+    public RawResult getUserResponse(String account) {
+        return userResponses.getIfPresent(account);
+    }
+
+    public void putUserResponse(String account, RawResult raw, long generation) {
+        userResponses.put(account, raw);
+        if (userGeneration(account) != generation) {
+            userResponses.invalidate(account);
+        }
+    }
+
+    /**
+     * 本地失效并通知其它实例
+     *
+     * @param id 文章id
+     * @return 完成信号
+     */
+    public Mono<Void> invalidateArticle(Long id) {
+        evictArticle(id);
+        return publish(ARTICLE_PREFIX + id);
+    }
+
+    /**
+     * 本地失效并通知其它实例
+     *
+     * @param account 帐号
+     * @return 完成信号
+     */
+    public Mono<Void> invalidateUser(String account) {
+        evictUser(account);
+        return publish(USER_PREFIX + account);
+    }
+
+    /**
+     * 命中、未命中、淘汰次数
+     *
+     * @return 各缓存的统计
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        result.put("article", toMap(articles.stats(), articles.estimatedSize()));
+        result.put("user", toMap(users.stats(), users.estimatedSize()));
+        result.put("articleResponse", toMap(articleResponses.stats(), articleResponses.estimatedSize()));
+        result.put("userResponse", toMap(userResponses.stats(), userResponses.estimatedSize()));
+        return result;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+
+        if (body.startsWith(ARTICLE_PREFIX)) {
+            try {
+                evictArticle(Long.valueOf(body.substring(ARTICLE_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                log.warn("[缓存同步] 无法识别的消息：" + body);
+            }
+        } else if (body.startsWith(USER_PREFIX)) {
+            evictUser(body.substring(USER_PREFIX.length()));
+        }
+    }
+
+    private void evictArticle(Long id) {
+        // 先增加代数再移除：与写入后检查代数的顺序相反，加载到的旧数据总会被其中一方移除
+        articleGenerations.incrementAndGet(stripe(id));
+        articles.invalidate(id);
+        articleResponses.invalidate(id);
+    }
+
+    private void evictUser(String account) {
+        userGenerations.incrementAndGet(stripe(account));
+        users.invalidate(account);
+        userResponses.invalidate(account);
+    }
+
+    private Mono<Void> publish(String message) {
+        return redisTemplate.execute(RedisScripts.PUBLISH,
+                Collections.singletonList(RedisKey.of(CACHE_CHANNEL)), Collections.singletonList(message))
+                .doOnError(e -> log.error("[缓存同步] 发布失效消息失败：" + e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+}
@@ -0,0 +1,98 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT_LOCK;
+
+/**
+ * 热门文章排行（ZSET，member为文章id）。
+ * 浏览、评论时加分（浏览随计数写回批量加，评论由新增评论的脚本加），
+ * 定时把所有分数乘以衰减系数（按半衰期换算），多个实例中每个周期只有一个执行；
+ * 分数过低的和排名靠后的文章移出排行
+ *
+ * @author yyy
+ */
+@Service
+public class HotArticleRanking {
+
+    private static final Logger log = LoggerFactory.getLogger(HotArticleRanking.class);
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Value("${tourweb.hot.click-weight:1}")
+    private double clickWeight;
+
+    @Value("${tourweb.hot.comment-weight:5}")
+    private double commentWeight;
+
+    @Value("${tourweb.hot.half-life-hours:24}")
+    private double halfLifeHours;
+
+    @Value("${tourweb.hot.decay-interval-ms:600000}")
+    private long decayIntervalMs;
+
+    @Value("${tourweb.hot.min-score:0.01}")
+    private double minScore;
+
+    @Value("${tourweb.hot.max-size:1000}")
+    private long maxSize;
+
+    public double getClickWeight() {
+        return clickWeight;
+    }
+
+    public double getCommentWeight() {
+        return commentWeight;
+    }
+
+    /**
+     * 排行前若干篇文章的id
+     *
+     * @param limit 数量
+     * @return 文章id，按热度从高到低
+     */
+    public Mono<List<String>> top(int limit) {
+        return redisTemplate.opsForZSet()
+                .reverseRange(RedisKey.of(ARTICLE_HOT), Range.of(Range.Bound.inclusive(0L), Range.Bound.inclusive((long) limit - 1)))
+                .collectList();
+    }
+
+    @Scheduled(initialDelayString = "${tourweb.hot.decay-interval-ms:600000}", fixedDelayString = "${tourweb.hot.decay-interval-ms:600000}")
+    public void decay() {
+        double factor = Math.pow(0.5, decayIntervalMs / (halfLifeHours * 3600 * 1000));
+        // 锁比周期略短，保证下个周期能重新获取
+        long lockSeconds = Math.max(1, decayIntervalMs * 9 / 10 / 1000);
+
+        List<String> keys = Arrays.asList(RedisKey.of(ARTICLE_HOT), RedisKey.of(ARTICLE_HOT_LOCK));
+        List<String> args = Arrays.asList(String.valueOf(factor), String.valueOf(lockSeconds),
+                String.valueOf(minScore), String.valueOf(maxSize));
+
+        redisTemplate.execute(RedisScripts.HOT_DECAY, keys, args)
+                .next()
+                .doOnNext(size -> {
+                    if (size >= 0) {
+                        log.info("[热门文章] 衰减完成，系数{}，剩余{}篇", factor, size);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("[热门文章] 衰减失败：" + e.getMessage());
+                    return Mono.empty();
+                })
+                .block();
+    }
+}
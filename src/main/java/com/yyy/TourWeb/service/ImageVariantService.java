@@ -0,0 +1,324 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.ImageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传图片的缩略图。
+ * 上传完成后异步生成各尺寸（按宽度等比缩放），存放在 {上传目录}/.variants/w{宽度}/ 下；
+ * 访问时按 ?w= 选择不小于该宽度的最小尺寸，尚未生成的当场生成，同一文件同一尺寸的并发请求只生成一次。
+ * 查找文件在弹性线程池上执行，缩放在有界线程池上执行，都不占用事件循环线程；缩放队列满时缩略图直接返回原图，原图的输出不受影响；
+ * 解码前先读取图片尺寸，像素数超出上限的不解码
+ *
+ * @author yyy
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final String VARIANT_DIR = ".variants";
+
+    @Value("${tourweb.upload.dir:upload}")
+    private String uploadDir;
+
+    @Value("${tourweb.upload.variant-widths:64,320}")
+    private int[] widths;
+
+    @Value("${tourweb.upload.variant-threads:2}")
+    private int threads;
+
+    @Value("${tourweb.upload.variant-queue-size:256}")
+    private int queueSize;
+
+    @Value("${tourweb.upload.max-pixels:40000000}")
+    private long maxPixels;
+
+    private final Map<Path, Mono<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private Path root;
+
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        widths = Arrays.stream(widths).sorted().distinct().toArray();
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "image-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Schedulers.fromExecutorService(executor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 生成所有尺寸，上传完成后调用
+     *
+     * @param name 上传目录下的相对路径
+     * @return 完成信号
+     */
+    public Mono<Void> generateAll(String name) {
+        Path original = resolve(name);
+        if (original == null) {
+            return Mono.empty();
+        }
+
+        return Flux.fromArray(Arrays.stream(widths).boxed().toArray(Integer[]::new))
+                .concatMap(width -> variant(original, width))
+                .onErrorResume(e -> {
+                    log.warn("[缩略图] 生成失败：" + name + "，" + e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 查找要输出的文件，同时读取大小和修改时间，调用方不必再在事件循环线程上读取
+     *
+     * @param name  上传目录下的相对路径
+     * @param width 期望宽度，为null时输出原图
+     * @return 文件，不存在时为空
+     */
+    public Mono<StoredFile> find(String name, Integer width) {
+        Path original = resolve(name);
+        if (original == null) {
+            return Mono.empty();
+        }
+
+        Integer variantWidth = width == null ? null : nearest(width);
+        return stat(original)
+                .flatMap(file -> variantWidth == null ? Mono.just(file) : variant(original, variantWidth)
+                        .flatMap(ImageVariantService::stat)
+                        .defaultIfEmpty(file)
+                        // 包括队列满时被拒绝
+                        .onErrorResume(e -> {
+                            log.warn("[缩略图] 生成失败，返回原图：" + name + "，" + e.getMessage());
+                            return Mono.just(file);
+                        }));
+    }
+
+    /**
+     * 删除文件的所有尺寸，原图被删除时调用
+     *
+     * @param name 上传目录下的相对路径
+     * @throws IOException 删除失败
+     */
+    public void deleteVariants(String name) throws IOException {
+        Path original = resolve(name);
+        if (original == null) {
+            return;
+        }
+
+        for (int width : widths) {
+            Files.deleteIfExists(root.resolve(VARIANT_DIR).resolve("w" + width).resolve(root.relativize(original)));
+        }
+    }
+
+    /**
+     * 上传目录下的文件，路径越出上传目录或指向缩略图目录时返回null
+     */
+    private Path resolve(String name) {
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+
+        Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root) || path.startsWith(root.resolve(VARIANT_DIR))) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * 读取文件属性，只是一次stat，在弹性线程池上执行，不占用缩放的有界队列，队列满时原图仍能输出
+     *
+     * @param path 文件
+     * @return 文件，不存在或不是普通文件时为空
+     */
+    private static Mono<StoredFile> stat(Path path) {
+        return Mono.fromCallable(() -> {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+            return attributes.isRegularFile()
+                    ? new StoredFile(path, attributes.size(), attributes.lastModifiedTime().toMillis())
+                    : null;
+        }).subscribeOn(Schedulers.elastic());
+    }
+
+    /**
+     * 不小于期望宽度的最小尺寸，比所有尺寸都大时为null（输出原图）
+     */
+    private Integer nearest(int width) {
+        for (int w : widths) {
+            if (w >= width) {
+                return w;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 已生成的直接返回，否则生成；检查是否已生成也在线程池上进行
+     */
+    private Mono<Path> variant(Path original, int width) {
+        Path target = root.resolve(VARIANT_DIR).resolve("w" + width).resolve(root.relativize(original));
+
+        return inFlight.computeIfAbsent(target, key -> Mono.fromCallable(() -> resize(original, target, width))
+                .subscribeOn(scheduler)
+                .doFinally(signal -> inFlight.remove(key))
+                .cache());
+    }
+
+    private Path resize(Path original, Path target, int width) throws IOException {
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+
+        String ext = StringUtils.getFilenameExtension(original.getFileName().toString());
+        BufferedImage source = read(original);
+        if (source == null || ext == null) {
+            throw new IOException("无法识别的图片");
+        }
+
+        // 原图不比目标宽时不再缩放，直接复制，之后的请求不用再判断
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), null, null);
+        try {
+            if (source.getWidth() <= width) {
+                Files.copy(original, tmp, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+                ImageIO.write(scale(source, width, height, ext), ext, tmp.toFile());
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return target;
+    }
+
+    /**
+     * 解码图片；先从文件头读取宽高，像素数超出上限时不解码，避免很小的文件解码出巨大的位图
+     *
+     * @param file 图片文件
+     * @return 图片，无法识别时为null
+     * @throws IOException 读取失败或像素数超出上限
+     */
+    BufferedImage read(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int imageWidth = reader.getWidth(0);
+                int imageHeight = reader.getHeight(0);
+                if ((long) imageWidth * imageHeight > maxPixels) {
+                    throw new IOException("图片像素数超出上限：" + imageWidth + "x" + imageHeight);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, String ext) {
+        // jpg、bmp不支持透明通道
+        boolean opaque = ImageType.JPG.getExt().equals(ext) || ImageType.BMP.getExt().equals(ext);
+        BufferedImage scaled = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * 要输出的文件及其大小、修改时间
+     */
+    public static class StoredFile {
+
+        private final Path path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        StoredFile(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Resource getResource() {
+            return new FileSystemResource(path.toFile());
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
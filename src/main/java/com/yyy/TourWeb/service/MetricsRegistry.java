@@ -0,0 +1,234 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.LatencyHistogram;
+import com.yyy.TourWeb.tools.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 运行指标：各接口的耗时、状态码和处理中的请求数，各Redis命令的耗时和失败次数，并发读取被合并的次数。
+ * 数值从启动起累计，由 /api/monitor/metrics 输出
+ *
+ * @author yyy
+ */
+@Service
+public class MetricsRegistry {
+
+    /**
+     * 接口数量超出上限后（如被扫描大量不存在的路径）不再新建，计入该名称
+     */
+    public static final String OTHER = "OTHER";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Value("${tourweb.metrics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tourweb.metrics.max-routes:200}")
+    private int maxRoutes;
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final ConcurrentMap<String, SingleFlight<?, ?>> singleFlights = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 请求开始
+     */
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param route  接口，如 GET /api/user/article/{id}
+     * @param status 状态码，请求被取消（客户端断开）时为0
+     * @param nanos  耗时
+     */
+    public void requestCompleted(String route, int status, long nanos) {
+        inFlight.decrement();
+        RouteMetrics metrics = routes.get(route);
+        if (metrics == null) {
+            metrics = routes.size() < maxRoutes ? routes.computeIfAbsent(route, key -> new RouteMetrics())
+                    : routes.computeIfAbsent(OTHER, key -> new RouteMetrics());
+        }
+        metrics.record(status, nanos);
+    }
+
+    /**
+     * Redis命令的统计
+     *
+     * @param command 命令，如 hash.hGet
+     * @return 统计
+     */
+    public CommandMetrics command(String command) {
+        CommandMetrics metrics = commands.get(command);
+        return metrics != null ? metrics : commands.computeIfAbsent(command, key -> new CommandMetrics());
+    }
+
+    /**
+     * 登记合并并发读取的统计
+     *
+     * @param name         名称，如 article
+     * @param singleFlight 合并并发读取
+     */
+    public void register(String name, SingleFlight<?, ?> singleFlight) {
+        singleFlights.put(name, singleFlight);
+    }
+
+    /**
+     * json格式的统计结果，耗时单位为微秒
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> http = new TreeMap<>();
+        routes.forEach((route, metrics) -> {
+            Map<String, Object> stats = metrics.latency.snapshot();
+            stats.put("status", metrics.statusCounts());
+            http.put(route, stats);
+        });
+
+        Map<String, Object> redis = new TreeMap<>();
+        commands.forEach((command, metrics) -> {
+            Map<String, Object> stats = metrics.latency.snapshot();
+            stats.put("errors", metrics.errors.sum());
+            redis.put(command, stats);
+        });
+
+        Map<String, Object> coalescing = new TreeMap<>();
+        singleFlights.forEach((name, singleFlight) -> coalescing.put(name, singleFlight.stats()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inFlight", inFlight.sum());
+        result.put("http", http);
+        result.put("redis", redis);
+        result.put("coalescing", coalescing);
+        return result;
+    }
+
+    /**
+     * Prometheus文本格式的统计结果，耗时单位为秒
+     *
+     * @return 统计结果
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# TYPE tourweb_http_requests_in_flight gauge\n")
+                .append("tourweb_http_requests_in_flight ").append(inFlight.sum()).append('\n');
+
+        Map<String, RouteMetrics> sortedRoutes = new TreeMap<>(routes);
+        out.append("# TYPE tourweb_http_request_duration_seconds summary\n");
+        sortedRoutes.forEach((route, metrics) -> summary(out, "tourweb_http_request_duration_seconds", "route", route, metrics.latency));
+        out.append("# TYPE tourweb_http_responses_total counter\n");
+        sortedRoutes.forEach((route, metrics) -> metrics.statusCounts().forEach((status, count) ->
+                out.append("tourweb_http_responses_total{route=\"").append(escape(route)).append("\",status=\"").append(status)
+                        .append("\"} ").append(count).append('\n')));
+
+        Map<String, CommandMetrics> sortedCommands = new TreeMap<>(commands);
+        out.append("# TYPE tourweb_redis_command_duration_seconds summary\n");
+        sortedCommands.forEach((command, metrics) -> summary(out, "tourweb_redis_command_duration_seconds", "command", command, metrics.latency));
+        out.append("# TYPE tourweb_redis_command_errors_total counter\n");
+        sortedCommands.forEach((command, metrics) ->
+                out.append("tourweb_redis_command_errors_total{command=\"").append(escape(command)).append("\"} ")
+                        .append(metrics.errors.sum()).append('\n'));
+
+        Map<String, SingleFlight<?, ?>> sortedSingleFlights = new TreeMap<>(singleFlights);
+        out.append("# TYPE tourweb_coalescing_calls_total counter\n");
+        sortedSingleFlights.forEach((name, singleFlight) ->
+                out.append("tourweb_coalescing_calls_total{name=\"").append(escape(name)).append("\"} ")
+                        .append(singleFlight.getCalls()).append('\n'));
+        out.append("# TYPE tourweb_coalescing_collapsed_total counter\n");
+        sortedSingleFlights.forEach((name, singleFlight) ->
+                out.append("tourweb_coalescing_collapsed_total{name=\"").append(escape(name)).append("\"} ")
+                        .append(singleFlight.getCollapsed()).append('\n'));
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyHistogram latency) {
+        String labelPair = label + "=\"" + escape(value) + "\"";
+        long[] values = latency.quantiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append('{').append(labelPair).append(",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                    .append(seconds(values[i])).append('\n');
+        }
+        out.append(name).append("_sum{").append(labelPair).append("} ").append(seconds(latency.getSum())).append('\n');
+        out.append(name).append("_count{").append(labelPair).append("} ").append(latency.getCount()).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1e6);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 单个接口的统计
+     */
+    public static class RouteMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * 按状态码计数，下标即状态码，0为请求被取消
+         */
+        private final AtomicLongArray statuses = new AtomicLongArray(600);
+
+        void record(int status, long nanos) {
+            latency.recordNanos(nanos);
+            statuses.incrementAndGet(status >= 0 && status < statuses.length() ? status : 0);
+        }
+
+        Map<String, Long> statusCounts() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < statuses.length(); i++) {
+                long count = statuses.get(i);
+                if (count > 0) {
+                    result.put(i == 0 ? "cancelled" : String.valueOf(i), count);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 单个Redis命令的统计
+     */
+    public static class CommandMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        /**
+         * 记录一次命令
+         *
+         * @param nanos  耗时
+         * @param failed 是否失败（含超时、断线时被拒绝）
+         */
+        public void record(long nanos, boolean failed) {
+            latency.recordNanos(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+}
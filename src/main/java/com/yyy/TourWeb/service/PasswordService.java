@@ -0,0 +1,138 @@
+package com.yyy.TourWeb.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 密码加盐哈希（PBKDF2WithHmacSHA256），存储格式为 pbkdf2$迭代次数$盐$哈希（盐和哈希为Base64）。
+ * 计算放在独立的有界线程池上，不占用Netty事件循环线程；
+ * 不是该格式的旧密码视为明文，登录成功后由调用方重新哈希写回
+ *
+ * @author yyy
+ */
+@Service
+public class PasswordService {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${tourweb.password.iterations:100000}")
+    private int iterations;
+
+    @Value("${tourweb.password.threads:0}")
+    private int threads;
+
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        scheduler = Schedulers.newParallel("password", size, true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 生成密码哈希
+     *
+     * @param password 明文密码
+     * @return 存储格式的哈希
+     */
+    public Mono<String> hash(String password) {
+        return Mono.fromCallable(() -> encode(password)).subscribeOn(scheduler);
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param password 明文密码
+     * @param stored   存储的哈希，或旧数据中的明文
+     * @return 是否一致
+     */
+    public Mono<Boolean> verify(String password, String stored) {
+        if (stored == null) {
+            return Mono.just(false);
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return Mono.just(MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        return Mono.fromCallable(() -> matches(password, stored)).subscribeOn(scheduler);
+    }
+
+    /**
+     * 是否需要重新哈希：旧的明文密码、格式损坏，或迭代次数低于当前配置
+     *
+     * @param stored 存储的密码
+     * @return 是否需要重新哈希
+     */
+    public boolean needsRehash(String stored) {
+        String[] parts = stored.split("\\$");
+        if (!stored.startsWith(PREFIX) || parts.length != 4) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    String encode(String password) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    boolean matches(String password, String stored) throws GeneralSecurityException {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected;
+        byte[] actual;
+        try {
+            expected = decoder.decode(parts[3]);
+            actual = pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            // 存储的哈希已损坏（迭代次数、Base64无法解析，盐为空等），视为不一致
+            return false;
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.RateLimiter;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.yyy.TourWeb.tools.RedisKey.RATE_LIMIT;
+
+/**
+ * 限流：先查进程内的令牌桶，通过后（启用时）再查Redis中所有实例共用的滑动窗口。
+ * Redis出错时放行，不因限流影响正常请求
+ *
+ * @author yyy
+ */
+@Service
+public class RateLimitService {
+
+    /**
+     * 限流的维度
+     */
+    public enum Scope {
+        /**
+         * 来源IP
+         */
+        IP,
+        /**
+         * 帐号
+         */
+        ACCOUNT
+    }
+
+    private static final Mono<Long> ALLOWED = Mono.just(0L);
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Value("${tourweb.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tourweb.ratelimit.ip.permits-per-second:5}")
+    private double ipPermitsPerSecond;
+
+    @Value("${tourweb.ratelimit.ip.burst:20}")
+    private int ipBurst;
+
+    @Value("${tourweb.ratelimit.account.permits-per-second:1}")
+    private double accountPermitsPerSecond;
+
+    @Value("${tourweb.ratelimit.account.burst:10}")
+    private int accountBurst;
+
+    @Value("${tourweb.ratelimit.max-keys:100000}")
+    private long maxKeys;
+
+    @Value("${tourweb.ratelimit.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    @Value("${tourweb.ratelimit.cluster.window-seconds:60}")
+    private long windowSeconds;
+
+    private RateLimiter ipLimiter;
+
+    private RateLimiter accountLimiter;
+
+    @PostConstruct
+    public void init() {
+        ipLimiter = new RateLimiter(ipPermitsPerSecond, ipBurst, maxKeys);
+        accountLimiter = new RateLimiter(accountPermitsPerSecond, accountBurst, maxKeys);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 取一次请求的许可
+     *
+     * @param scope 维度
+     * @param key   IP或帐号
+     * @return 0为通过；否则为还需等待的毫秒数
+     */
+    public Mono<Long> acquire(Scope scope, String key) {
+        if (!enabled) {
+            return ALLOWED;
+        }
+
+        long waitNanos = (scope == Scope.IP ? ipLimiter : accountLimiter).tryAcquire(key);
+        if (waitNanos > 0) {
+            return Mono.just(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        }
+        return clusterEnabled ? acquireShared(scope, key) : ALLOWED;
+    }
+
+    /**
+     * Redis中的滑动窗口，窗口内的上限与本地令牌桶一致：每秒令牌数 × 窗口 + 桶容量
+     */
+    private Mono<Long> acquireShared(Scope scope, String key) {
+        long limit = scope == Scope.IP ? (long) (ipPermitsPerSecond * windowSeconds) + ipBurst
+                : (long) (accountPermitsPerSecond * windowSeconds) + accountBurst;
+        List<String> keys = Collections.singletonList(RedisKey.of(RATE_LIMIT, scope.name().toLowerCase(), key));
+        List<String> args = Arrays.asList(String.valueOf(System.currentTimeMillis()), String.valueOf(TimeUnit.SECONDS.toMillis(windowSeconds)),
+                // 只需在窗口内唯一，不占用文章id的序列
+                String.valueOf(limit), Long.toHexString(ThreadLocalRandom.current().nextLong()));
+
+        return redisTemplate.execute(RedisScripts.SLIDING_WINDOW, keys, args)
+                .next()
+                .defaultIfEmpty(0L)
+                .onErrorReturn(0L);
+    }
+
+    /**
+     * Retry-After 响应头的秒数，向上取整
+     *
+     * @param waitMillis 还需等待的毫秒数
+     * @return 秒数
+     */
+    public static long retryAfterSeconds(long waitMillis) {
+        return Math.max(1, (waitMillis + 999) / 1000);
+    }
+}
@@ -0,0 +1,184 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.CommonUtil;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.yyy.TourWeb.tools.RedisKey.UPLOAD_REF;
+
+/**
+ * 定时删除没有引用的上传文件及其缩略图。
+ * 只处理按内容存放的文件，且修改时间超过宽限期（刚上传、尚未被头像或文章引用的文件不会被删除）；
+ * 同时清理中断上传遗留的临时文件
+ *
+ * @author yyy
+ */
+@Component
+public class UploadCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadCleaner.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * 待删除文件移入临时目录时的文件名前缀
+     */
+    private static final String GC_PREFIX = "gc-";
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Value("${tourweb.upload.dir:upload}")
+    private String uploadDir;
+
+    @Value("${tourweb.upload.gc-grace-seconds:86400}")
+    private long graceSeconds;
+
+    @Scheduled(initialDelayString = "${tourweb.upload.gc-interval-ms:3600000}", fixedDelayString = "${tourweb.upload.gc-interval-ms:3600000}")
+    public void clean() {
+        Path root = Paths.get(uploadDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() - graceSeconds * 1000;
+        try {
+            cleanTmp(root.resolve(UploadService.TMP_DIR), deadline);
+
+            List<String> candidates;
+            try (Stream<Path> files = Files.walk(root, 3)) {
+                candidates = files.filter(Files::isRegularFile)
+                        .filter(path -> lastModified(path) < deadline)
+                        .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                        .filter(UploadService::isContentPath)
+                        .collect(Collectors.toList());
+            }
+
+            int deleted = 0;
+            for (int i = 0; i < candidates.size(); i += BATCH_SIZE) {
+                deleted += cleanBatch(root, candidates.subList(i, Math.min(i + BATCH_SIZE, candidates.size())), deadline);
+            }
+            if (deleted > 0) {
+                log.info("[上传清理] 删除无引用文件{}个", deleted);
+            }
+        } catch (IOException e) {
+            log.error("[上传清理] 失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除一批候选文件中没有引用的。
+     * 先把文件移入临时目录，再由脚本原子地删除引用数不大于0的记录：
+     * 移走之后的重复上传会重新放入文件，移走之前的重复上传刷新了修改时间，
+     * 脚本执行前的引用使记录保留，这几种情况下文件都放回原处
+     */
+    int cleanBatch(Path root, List<String> paths, long deadline) throws IOException {
+        Path trashDir = root.resolve(UploadService.TMP_DIR);
+        Files.createDirectories(trashDir);
+
+        Map<String, Path> moved = new LinkedHashMap<>();
+        for (String path : paths) {
+            Path file = root.resolve(path);
+            // 列出文件后可能又被重复上传刷新了修改时间
+            if (lastModified(file) >= deadline) {
+                continue;
+            }
+            Path trash = trashDir.resolve(GC_PREFIX + CommonUtil.randomString(16));
+            try {
+                Files.move(file, trash, StandardCopyOption.ATOMIC_MOVE);
+                moved.put(path, trash);
+            } catch (NoSuchFileException e) {
+                // 已被删除
+            }
+        }
+        if (moved.isEmpty()) {
+            return 0;
+        }
+
+        List<String> removed;
+        try {
+            removed = redisTemplate.execute(RedisScripts.UPLOAD_UNREF,
+                    Collections.singletonList(RedisKey.of(UPLOAD_REF)), new ArrayList<>(moved.keySet()))
+                    .next()
+                    .block();
+        } catch (RuntimeException e) {
+            restore(root, moved.keySet(), moved);
+            throw e;
+        }
+
+        int deleted = 0;
+        Set<String> kept = new HashSet<>(moved.keySet());
+        for (String path : removed) {
+            Path trash = moved.get(path);
+            // 移走前被重复上传的文件修改时间是新的，引用数稍后才会增加，不能删除
+            if (lastModified(trash) >= deadline) {
+                continue;
+            }
+            imageVariantService.deleteVariants(path);
+            Files.deleteIfExists(trash);
+            kept.remove(path);
+            deleted++;
+        }
+        restore(root, kept, moved);
+        return deleted;
+    }
+
+    /**
+     * 把移入临时目录的文件放回原处；按内容存放，原处已有重新上传的文件时两者内容相同，直接覆盖
+     */
+    private static void restore(Path root, Set<String> paths, Map<String, Path> moved) throws IOException {
+        for (String path : paths) {
+            Path target = root.resolve(path);
+            Files.createDirectories(target.getParent());
+            Files.move(moved.get(path), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void cleanTmp(Path tmpDir, long deadline) throws IOException {
+        if (!Files.isDirectory(tmpDir)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (lastModified(path) < deadline) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.CommonUtil;
+import com.yyy.TourWeb.tools.ImageType;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+import static com.yyy.TourWeb.tools.RedisKey.UPLOAD_REF;
+
+/**
+ * 图片上传。
+ * 文件内容边接收边通过AsynchronousFileChannel写入临时文件，超过大小上限或文件头不是允许的图片格式时立即中止并删除；
+ * 建目录、改名、删除等阻塞的文件操作放在elastic线程池上，不占用Netty事件循环线程。
+ * 文件按内容的SHA-256存放（{上传目录}/ab/cd/abcd....ext），相同内容只存一份；
+ * 用户头像、文章图片对文件的引用数记在Redis中，没有引用的文件由 {@link UploadCleaner} 定时删除
+ *
+ * @author yyy
+ */
+@Service
+public class UploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+
+    static final String TMP_DIR = ".tmp";
+
+    /**
+     * 按内容存放的文件相对路径
+     */
+    private static final Pattern CONTENT_PATH = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z]+");
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Value("${tourweb.upload.dir:upload}")
+    private String uploadDir;
+
+    @Value("${tourweb.upload.max-bytes:5242880}")
+    private long maxBytes;
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 上传接口返回的路径转为上传目录下的相对路径
+     *
+     * @param filePath 上传接口返回的路径
+     * @return 相对路径
+     */
+    public String relativePath(String filePath) {
+        String path = filePath.replace(File.separatorChar, '/');
+        String prefix = uploadDir.replace(File.separatorChar, '/') + "/";
+        return path.startsWith(prefix) ? path.substring(prefix.length()) : path;
+    }
+
+    /**
+     * 增加文件引用数，不是按内容存放的文件（旧文件、外部链接）忽略。
+     * 失败时返回错误，调用方不能再写入对该文件的引用，否则文件可能被当作无引用文件删除
+     *
+     * @param filePath 上传接口返回的路径
+     * @return 完成信号
+     */
+    public Mono<Void> retain(String filePath) {
+        return changeRef(filePath, 1);
+    }
+
+    /**
+     * 减少文件引用数。失败只会使文件不被清理，记录日志后忽略
+     *
+     * @param filePath 上传接口返回的路径
+     * @return 完成信号
+     */
+    public Mono<Void> release(String filePath) {
+        return changeRef(filePath, -1)
+                .doOnError(e -> log.error("[上传] 减少引用数失败：" + filePath + "，" + e.getMessage()))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * 记录引用数时使用的路径，供在脚本中与引用它的数据一起增加引用数
+     *
+     * @param filePath 上传接口返回的路径
+     * @return 相对路径，不是按内容存放的文件（旧文件、外部链接）为null
+     */
+    public String refPath(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+
+        String path = relativePath(filePath);
+        return isContentPath(path) ? path : null;
+    }
+
+    private Mono<Void> changeRef(String filePath, long delta) {
+        String path = refPath(filePath);
+        if (path == null) {
+            return Mono.empty();
+        }
+
+        return redisTemplate.opsForHash().increment(RedisKey.of(UPLOAD_REF), path, delta).then();
+    }
+
+    static boolean isContentPath(String path) {
+        return CONTENT_PATH.matcher(path).matches();
+    }
+
+    /**
+     * 保存上传的图片
+     *
+     * @param part 文件
+     * @return 文件路径
+     */
+    public Mono<Result<String>> save(FilePart part) {
+        Path tmp = Paths.get(uploadDir, TMP_DIR, CommonUtil.randomString(16));
+        Upload upload = new Upload();
+
+        Flux<DataBuffer> content = part.content()
+                .handle((buffer, sink) -> {
+                    Result<String> error = upload.accept(buffer);
+                    if (error != null) {
+                        DataBufferUtils.release(buffer);
+                        sink.error(new RejectedException(error));
+                    } else {
+                        sink.next(buffer);
+                    }
+                });
+
+        return Mono.fromCallable(() -> open(tmp))
+                .subscribeOn(Schedulers.elastic())
+                .flatMap(channel -> DataBufferUtils.write(content, channel, 0)
+                        .map(DataBufferUtils::release)
+                        .doFinally(signal -> close(channel))
+                        .then())
+                .then(Mono.fromCallable(() -> {
+                    ImageType type = upload.type();
+                    if (type == null) {
+                        throw new RejectedException(Result.error(3, "不允许上传该格式的文件"));
+                    }
+                    return Result.ok(store(tmp, upload.hash(), type));
+                }).subscribeOn(Schedulers.elastic()))
+                .onErrorResume(e -> delete(tmp).then(Mono.just(e instanceof RejectedException
+                        ? ((RejectedException) e).result
+                        : error(e))));
+    }
+
+    private static AsynchronousFileChannel open(Path tmp) throws IOException {
+        Files.createDirectories(tmp.getParent());
+        return AsynchronousFileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 临时文件按内容放到最终位置，内容相同的文件已存在时直接使用已有文件
+     */
+    private String store(Path tmp, String hash, ImageType type) throws IOException {
+        String relative = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + type.getExt();
+        Path target = Paths.get(uploadDir).resolve(relative);
+
+        try {
+            // 内容相同的文件已存在：刷新修改时间，避免在被引用前就被当作过期的无引用文件删除
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            Files.delete(tmp);
+            return uploadDir + File.separator + relative.replace('/', File.separatorChar);
+        } catch (NoSuchFileException e) {
+            // 不存在，或刚被 UploadCleaner 移走，放入新上传的文件
+        }
+
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(tmp);
+        }
+        return uploadDir + File.separator + relative.replace('/', File.separatorChar);
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("[上传] 关闭文件失败：" + e.getMessage());
+        }
+    }
+
+    private static Mono<Void> delete(Path tmp) {
+        return Mono.<Void>fromRunnable(() -> {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.warn("[上传] 删除临时文件失败：" + e.getMessage());
+            }
+        }).subscribeOn(Schedulers.elastic());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Result<String> error(Throwable e) {
+        log.error("[上传] 保存文件失败：" + e.getMessage());
+        return Result.error(1, "上传文件异常");
+    }
+
+    /**
+     * 一次上传的状态：已接收的字节数、文件头和内容摘要
+     */
+    private class Upload {
+
+        private final byte[] head = new byte[ImageType.HEADER_BYTES];
+
+        private final MessageDigest digest = sha256();
+
+        private int headLength;
+
+        private long size;
+
+        /**
+         * 检查收到的数据块
+         *
+         * @param buffer 数据块
+         * @return 需要中止时返回错误结果，否则为null
+         */
+        Result<String> accept(DataBuffer buffer) {
+            int count = buffer.readableByteCount();
+            size += count;
+            if (size > maxBytes) {
+                return Result.error(4, "文件过大");
+            }
+
+            if (headLength < head.length) {
+                int start = buffer.readPosition();
+                int n = Math.min(head.length - headLength, count);
+                for (int i = 0; i < n; i++) {
+                    head[headLength++] = buffer.getByte(start + i);
+                }
+                if (headLength == head.length && type() == null) {
+                    return Result.error(3, "不允许上传该格式的文件");
+                }
+            }
+
+            digest.update(buffer.asByteBuffer());
+            return null;
+        }
+
+        String hash() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+
+        ImageType type() {
+            return ImageType.sniff(head, headLength);
+        }
+    }
+
+    /**
+     * 上传被拒绝，携带返回给客户端的结果
+     */
+    private static class RejectedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Result<String> result;
+
+        RejectedException(Result<String> result) {
+            super(result.getMsg(), null, false, false);
+            this.result = result;
+        }
+    }
+}
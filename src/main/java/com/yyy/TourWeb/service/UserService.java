@@ -3,27 +3,39 @@ package com.yyy.TourWeb.service;
 import com.yyy.TourWeb.domain.Article;
 import com.yyy.TourWeb.domain.Comment;
 import com.yyy.TourWeb.domain.User;
-import com.yyy.TourWeb.tools.CommonUtil;
+import com.yyy.TourWeb.tools.IdGenerator;
 import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.Page;
+import com.yyy.TourWeb.tools.RawResult;
 import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.RedisScripts;
 import com.yyy.TourWeb.tools.Result;
+import com.yyy.TourWeb.tools.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.codec.multipart.Part;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.MultiValueMap;
-import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
-import java.io.IOException;
-import java.time.Instant;
+import javax.annotation.PostConstruct;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import static com.yyy.TourWeb.tools.RedisKey.*;
 
@@ -34,9 +46,96 @@ import static com.yyy.TourWeb.tools.RedisKey.*;
 @Transactional(rollbackFor = Exception.class)
 public class UserService {
 
+    /**
+     * 流式输出时每次从Redis读取的文章数
+     */
+    private static final int STREAM_BATCH_SIZE = 100;
+
     @Autowired
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
+    @Autowired
+    private ReactiveRedisTemplate<String, User> userRedisTemplate;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Article> articleRedisTemplate;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Comment> commentRedisTemplate;
+
+    /**
+     * 从只读副本读取，用于文章详情、用户信息和文章列表，可能比主节点稍旧
+     */
+    @Autowired
+    @Qualifier("replicaRedisTemplate")
+    private ReactiveRedisTemplate<String, String> replicaRedisTemplate;
+
+    @Autowired
+    @Qualifier("userReplicaRedisTemplate")
+    private ReactiveRedisTemplate<String, User> userReplicaRedisTemplate;
+
+    @Autowired
+    @Qualifier("articleReplicaRedisTemplate")
+    private ReactiveRedisTemplate<String, Article> articleReplicaRedisTemplate;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private ArticleCounter articleCounter;
+
+    @Autowired
+    private ArticleBodyStore articleBodyStore;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    @Autowired
+    private ArticleSearchSync articleSearchSync;
+
+    @Autowired
+    private HotArticleRanking hotArticleRanking;
+
+    @Value("${tourweb.comment.max-per-article:10000}")
+    private int maxCommentsPerArticle;
+
+    @Value("${tourweb.article.filter-ttl-seconds:10}")
+    private long filterTtlSeconds;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * 本地缓存未命中时，同一篇文章、同一个用户的并发读取合并为一次Redis读取和一次json解析
+     */
+    private final SingleFlight<Long, Article> articleLoads = new SingleFlight<>();
+
+    private final SingleFlight<Long, RawResult> articleResponseLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, User> userLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, RawResult> userResponseLoads = new SingleFlight<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        metricsRegistry.register("article", articleLoads);
+        metricsRegistry.register("articleResponse", articleResponseLoads);
+        metricsRegistry.register("user", userLoads);
+        metricsRegistry.register("userResponse", userResponseLoads);
+    }
+
     /**
      * 用户注册处理
      *
@@ -45,14 +144,17 @@ public class UserService {
      */
     public Mono<Result> reg(User user) {
         String redisKey = RedisKey.of(USER);
-        String jsonUser = JsonUtils.toString(user);
 
         return redisTemplate.opsForHash().hasKey(redisKey, user.getAccount())
                 .flatMap(bo -> {
                     if (bo) {
                         return Mono.just(Result.error(1, "账号已存在"));
                     } else {
-                        return redisTemplate.opsForHash().put(redisKey, user.getAccount(), jsonUser)
+                        return passwordService.hash(user.getPassword())
+                                .flatMap(hash -> {
+                                    User dbUser = new User(user.getAccount(), hash, user.getIconPath());
+                                    return userRedisTemplate.opsForHash().put(redisKey, user.getAccount(), dbUser);
+                                })
                                 .map(flag -> {
                                     if (flag) {
                                         return Result.ok();
@@ -74,23 +176,47 @@ public class UserService {
     public Mono<Result<Object>> login(User user) {
         String redisKey = RedisKey.of(USER);
 
-        return redisTemplate.opsForHash().hasKey(redisKey, user.getAccount())
-                .filter(bo -> bo)
-                .flatMap(bo -> redisTemplate.opsForHash().get(redisKey, user.getAccount())
-                        .filter(json -> (json != null) && !json.toString().isEmpty())
-                        .map(json -> {
-                            User dbUser = JsonUtils.toObject(json.toString(), User.class);
-
-                            if (dbUser != null && dbUser.getPassword().equals(user.getPassword())) {
-                                return Result.ok();
-                            } else {
-                                return Result.error(2, "密码不正确");
+        return userRedisTemplate.<String, User>opsForHash().get(redisKey, user.getAccount())
+                .flatMap(dbUser -> passwordService.verify(user.getPassword(), dbUser.getPassword())
+                        .flatMap(matched -> {
+                            if (!matched) {
+                                return Mono.just(Result.error(2, "密码不正确"));
                             }
-                        })
-                        .switchIfEmpty(Mono.just(Result.error(1, "账号不存在"))))
+                            if (passwordService.needsRehash(dbUser.getPassword())) {
+                                return rehash(dbUser, user.getPassword()).thenReturn(Result.ok());
+                            }
+                            return Mono.just(Result.ok());
+                        }))
                 .switchIfEmpty(Mono.just(Result.error(1, "账号不存在")));
     }
 
+    /**
+     * 旧的明文密码或迭代次数过低的哈希，登录成功后按当前配置重新哈希，失败不影响本次登录
+     *
+     * @param dbUser   存储的用户
+     * @param password 明文密码
+     * @return 完成信号
+     */
+    private Mono<Void> rehash(User dbUser, String password) {
+        return passwordService.hash(password)
+                .flatMap(hash -> {
+                    dbUser.setPassword(hash);
+                    return userRedisTemplate.opsForHash().put(RedisKey.of(USER), dbUser.getAccount(), dbUser);
+                })
+                .then(Mono.defer(() -> entityCache.invalidateUser(dbUser.getAccount())))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * 对外返回的用户信息不含密码
+     *
+     * @param user 存储的用户
+     * @return 去掉密码的副本
+     */
+    private static User withoutPassword(User user) {
+        return new User(user.getAccount(), null, user.getIconPath());
+    }
+
     /**
      * 获取指定帐号的用户信息
      *
@@ -100,56 +226,103 @@ public class UserService {
     public Mono<Result<User>> getInfo(String account) {
         String redisKey = RedisKey.of(USER);
 
-        return redisTemplate.opsForHash().get(redisKey, account)
-                .filter(json -> (json != null) && !json.toString().isEmpty())
-                .map(json -> {
-                    User dbUser = JsonUtils.toObject(json.toString(), User.class);
+        User cached = entityCache.getUser(account);
+        if (cached != null) {
+            return Mono.just(Result.ok(cached));
+        }
 
-                    return Result.ok(dbUser);
-                })
+        return userLoads.execute(account, () -> {
+            long generation = entityCache.userGeneration(account);
+            return userReplicaRedisTemplate.<String, User>opsForHash().get(redisKey, account)
+                    .map(dbUser -> {
+                        User user = withoutPassword(dbUser);
+                        entityCache.putUser(user, generation);
+                        return user;
+                    });
+        })
+                .map(Result::ok)
                 .switchIfEmpty(Mono.just(Result.error(1, "账号不存在")));
     }
 
     /**
-     * 上传头像
+     * 批量获取用户信息，重复的帐号只查询一次，未命中本地缓存的用一次HMGET读取
      *
-     * @param multiValueMap 表单信息
-     * @return 上传文件url
+     * @param accounts 帐号
+     * @return 与请求顺序一致的用户信息，不存在的为null
      */
-    public Mono<Result<String>> iconUpload(MultiValueMap<String, Part> multiValueMap) {
-        Map<String, Part> parts = multiValueMap.toSingleValueMap();
-        if (parts.containsKey("file")) {
-            FilePart part = (FilePart) parts.get("file");
-            String ext = StringUtils.getFilenameExtension(part.filename());
-
-            if (ext != null) {
-                ext = ext.toLowerCase();
+    public Mono<Result<List<User>>> getInfos(List<String> accounts) {
+        Map<String, User> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Map<String, Long> generations = new HashMap<>();
+        for (String account : new LinkedHashSet<>(accounts)) {
+            User cached = entityCache.getUser(account);
+            if (cached != null) {
+                found.put(account, cached);
+            } else {
+                misses.add(account);
+                generations.put(account, entityCache.userGeneration(account));
             }
+        }
 
-            if (!"jpg".equals(ext) && !"gif".equals(ext) && !"png".equals(ext) && !"bmp".equals(ext)) {
-                return Mono.just(Result.error(3, "不允许上传该格式的文件"));
-            }
+        return RedisScripts.hmget(userReplicaRedisTemplate, RedisKey.of(USER), misses,
+                userReplicaRedisTemplate.getSerializationContext().<User>getHashValueSerializationPair().getReader())
+                .map(values -> {
+                    for (User user : values) {
+                        if (user != null) {
+                            user = withoutPassword(user);
+                            entityCache.putUser(user, generations.get(user.getAccount()));
+                            found.put(user.getAccount(), user);
+                        }
+                    }
 
-            String fileName = ZonedDateTime.now().toEpochSecond()
-                    + "_" + CommonUtil.randomString(6) + "." + ext;
+                    List<User> users = new ArrayList<>(accounts.size());
+                    for (String account : accounts) {
+                        users.add(found.get(account));
+                    }
+                    return Result.ok(users);
+                });
+    }
 
-            String filePath = "upload" + File.separator + fileName;
+    /**
+     * 获取指定帐号的用户信息，直接返回序列化好的响应体
+     *
+     * @param account 帐号
+     * @return 响应体
+     */
+    public Mono<RawResult> getInfoRaw(String account) {
+        RawResult cached = entityCache.getUserResponse(account);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
 
-            // 目录
-            File dir = new File("upload");
-            if (!dir.exists()) {
-                dir.mkdir();
-            }
+        return userResponseLoads.execute(account, () -> {
+            long generation = entityCache.userGeneration(account);
+            return userReplicaRedisTemplate.<String, User>opsForHash().get(RedisKey.of(USER), account)
+                    .map(dbUser -> {
+                        RawResult raw = RawResult.ok(JsonUtils.toString(withoutPassword(dbUser)));
+                        entityCache.putUserResponse(account, raw, generation);
+                        return raw;
+                    });
+        })
+                .switchIfEmpty(Mono.fromSupplier(() -> RawResult.of(Result.error(1, "账号不存在"))));
+    }
 
-            File file = new File(filePath);
-            if (!file.exists()) {
-                try {
-                    file.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            return part.transferTo(file).thenReturn(Result.ok(filePath));
+    /**
+     * 上传头像
+     *
+     * @param multiValueMap 表单信息
+     * @return 上传文件url
+     */
+    public Mono<Result<String>> iconUpload(MultiValueMap<String, Part> multiValueMap) {
+        Map<String, Part> parts = multiValueMap.toSingleValueMap();
+        if (parts.get("file") instanceof FilePart) {
+            return uploadService.save((FilePart) parts.get("file"))
+                    .doOnNext(result -> {
+                        // 缩略图在后台生成，不等待
+                        if (result.getSuccess()) {
+                            imageVariantService.generateAll(uploadService.relativePath(result.getData())).subscribe();
+                        }
+                    });
         }
 
         return Mono.just(Result.error(1, "上传文件异常"));
@@ -165,14 +338,18 @@ public class UserService {
     public Mono<Result<Object>> iconUpdate(String account, String iconPath) {
         String redisKey = RedisKey.of(USER);
 
-        return redisTemplate.opsForHash().get(redisKey, account)
-                .filter(json -> (json != null) && !json.toString().isEmpty())
-                .flatMap(json -> {
-                    User dbUser = JsonUtils.toObject(json.toString(), User.class);
+        return userRedisTemplate.<String, User>opsForHash().get(redisKey, account)
+                .flatMap(dbUser -> {
+                    String oldIconPath = dbUser.getIconPath();
+                    boolean changed = !iconPath.equals(oldIconPath);
                     dbUser.setIconPath(iconPath);
 
-                    return redisTemplate.opsForHash().put(redisKey, account, JsonUtils.toString(dbUser))
-                            .map(o -> Result.ok())
+                    Mono<Boolean> put = userRedisTemplate.opsForHash().put(redisKey, account, dbUser);
+                    return (changed ? withRetained(iconPath, put) : put)
+                            .flatMap(o -> Mono.when(
+                                    entityCache.invalidateUser(account),
+                                    changed ? uploadService.release(oldIconPath) : Mono.empty())
+                                    .thenReturn(Result.ok()))
                             .switchIfEmpty(Mono.just(Result.error(2, "数据库连接异常")));
                 })
                 .switchIfEmpty(Mono.just(Result.error(1, "账号不存在")));
@@ -188,62 +365,481 @@ public class UserService {
     public Mono<Result<Object>> changePassword(String account, String password) {
         String redisKey = RedisKey.of(USER);
 
-        return redisTemplate.opsForHash().get(redisKey, account)
-                .filter(json -> (json != null) && !json.toString().isEmpty())
-                .flatMap(json -> {
-                    User dbUser = JsonUtils.toObject(json.toString(), User.class);
-                    dbUser.setPassword(password);
+        return userRedisTemplate.<String, User>opsForHash().get(redisKey, account)
+                .flatMap(dbUser -> passwordService.hash(password).flatMap(hash -> {
+                    dbUser.setPassword(hash);
 
-                    return redisTemplate.opsForHash().put(redisKey, account, JsonUtils.toString(dbUser))
-                            .map(o -> Result.ok())
+                    return userRedisTemplate.opsForHash().put(redisKey, account, dbUser)
+                            .flatMap(o -> entityCache.invalidateUser(account).thenReturn(Result.ok()))
                             .switchIfEmpty(Mono.just(Result.error(2, "数据库连接异常")));
-                })
+                }))
                 .switchIfEmpty(Mono.just(Result.error(1, "账号不存在")));
     }
 
+    /**
+     * 新增文章，由一个脚本写入正文、文章（不含正文，带摘要）、计数、所有索引和图片的引用数
+     *
+     * @param article 文章
+     * @return 处理结果
+     */
     public Mono<Result<Object>> addArticle(Article article) {
         String title = article.getTitle();
-        String account = article.getUserAccount();
-        String redisKey = RedisKey.of(ARTICLE);
-        Long id = Instant.now().getEpochSecond();
-        String userArticleKey = RedisKey.of(USER_ARTICLE, account);
+        Long id = idGenerator.nextId();
 
         title = title.trim();
         article.setTitle(title);
         article.setId(id);
-        article.setClickCount(1);
-        article.setCommentCount(0);
+        // 计数单独存放，不写入文章json
+        article.setClickCount(null);
+        article.setCommentCount(null);
         article.setGmtCreate(ZonedDateTime.now());
-
-        return redisTemplate.opsForHash()
-                .put(redisKey, id.toString(), JsonUtils.toString(article))
-                .flatMap(o -> redisTemplate.opsForZSet().add(userArticleKey, id.toString(), id)
-                        .flatMap(result -> Mono.just(Result.ok()))
-                        .switchIfEmpty(Mono.just(Result.error(2, "数据库连接异常")))
-                )
+        article.setExcerpt(ArticleBodyStore.excerpt(article.getContent()));
+        Article meta = article.toBuilder().content(null).build();
+        String refPath = uploadService.refPath(article.getImgPath());
+
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisKey.of(ARTICLE));
+        keys.add(RedisKey.of(ARTICLE_CLICK_COUNT));
+        keys.add(RedisKey.of(ARTICLE_COMMENT_COUNT));
+        keys.add(RedisKey.of(ARTICLE_BODY));
+        keys.add(RedisKey.of(UPLOAD_REF));
+        keys.addAll(ArticleIndexes.keys(article));
+        List<Object> args = Arrays.asList(id.toString(), JsonUtils.toString(meta),
+                articleBodyStore.encode(article.getContent()), refPath == null ? "" : refPath);
+
+        // id是新生成的，本地和其它实例的缓存中都不可能有这篇文章，无需失效；检索索引需通知其它实例加入。
+        // id已存在（返回-1）时什么都没有写入
+        return RedisScripts.executeBinary(redisTemplate, RedisScripts.CREATE_ARTICLE, keys, args)
+                .filter(n -> n >= 0)
+                .doOnNext(o -> articleSearchIndex.add(article))
+                .flatMap(o -> articleSearchSync.publishCreated(id).thenReturn(Result.ok()))
                 .switchIfEmpty(Mono.just(Result.error(2, "数据库连接异常")));
     }
 
-    public Mono<Result<Article>> getArticle(Long id) {
-        String redisKey = RedisKey.of(ARTICLE);
+    /**
+     * 先增加图片的引用数再写入引用它的数据：增加失败时不写入，错误直接返回；写入失败或没有结果时撤销增加的引用
+     *
+     * @param filePath 图片路径
+     * @param write    写入
+     * @param <T>      写入结果类型
+     * @return 写入结果
+     */
+    private <T> Mono<T> withRetained(String filePath, Mono<T> write) {
+        return uploadService.retain(filePath)
+                .then(write
+                        .onErrorResume(e -> uploadService.release(filePath).then(Mono.error(e)))
+                        .switchIfEmpty(uploadService.release(filePath).then(Mono.empty())));
+    }
 
-        return redisTemplate.opsForHash().get(redisKey, id.toString())
-                .flatMap(o -> Mono.just(Result.ok(JsonUtils.toObject(o.toString(), Article.class))))
+    /**
+     * 根据文章ID获取文章
+     *
+     * @param id 文章id
+     * @return 含正文的文章
+     */
+    public Mono<Result<Article>> getArticle(Long id) {
+        // 文章存在才计点击，不存在的id不能进入点击数和热榜
+        return articleLoads.execute(id, () -> loadArticle(id))
+                .doOnNext(article -> articleCounter.click(id))
+                .flatMap(this::withCounts)
                 .switchIfEmpty(Mono.just(Result.error(1, "文章不存在")));
     }
 
+    /**
+     * 读取文章和正文（并行），结果由并发的调用方共用，不能修改
+     *
+     * @param id 文章id
+     * @return 含正文的文章
+     */
+    private Mono<Article> loadArticle(Long id) {
+        Article cached = entityCache.getArticle(id);
+        long generation = entityCache.articleGeneration(id);
+        Mono<Article> meta = cached != null
+                ? Mono.just(cached)
+                : articleReplicaRedisTemplate.<String, Article>opsForHash().get(RedisKey.of(ARTICLE), id.toString())
+                .doOnNext(article -> entityCache.putArticle(article, generation));
+
+        return Mono.zip(meta, body(id))
+                .map(tuple -> withBody(tuple.getT1(), tuple.getT2()));
+    }
+
+    /**
+     * 读取正文，旧数据的正文在文章json中，没有单独的正文，此时为空字符串
+     *
+     * @param id 文章id
+     * @return 正文
+     */
+    private Mono<String> body(Long id) {
+        return articleBodyStore.get(id).defaultIfEmpty("");
+    }
+
+    /**
+     * 复制文章并填入正文，旧数据沿用json中的正文
+     *
+     * @param article 文章
+     * @param body    正文，为空字符串时表示没有单独存放
+     * @return 副本
+     */
+    private static Article withBody(Article article, String body) {
+        return body.isEmpty() && article.getContent() != null ? article : article.toBuilder().content(body).build();
+    }
+
+    /**
+     * 批量获取文章，重复的id只查询一次，未命中本地缓存的用一次HMGET读取
+     *
+     * @param ids 文章id
+     * @return 与请求顺序一致的文章（不含正文，带摘要），不存在的为null
+     */
+    public Mono<Result<List<Article>>> getArticles(List<Long> ids) {
+        return loadArticles(ids).map(Result::ok);
+    }
+
+    /**
+     * 按id读取文章并填入最新计数，优先使用本地缓存，其余的用一次HMGET读取
+     *
+     * @param ids 文章id，可重复
+     * @return 与ids顺序一致的文章（不含正文，带摘要），不存在的为null
+     */
+    private Mono<List<Article>> loadArticles(List<Long> ids) {
+        Map<Long, Article> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Map<Long, Long> generations = new HashMap<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Article cached = entityCache.getArticle(id);
+            if (cached != null) {
+                found.put(id, ArticleBodyStore.summary(cached));
+            } else {
+                misses.add(id.toString());
+                generations.put(id, entityCache.articleGeneration(id));
+            }
+        }
+
+        return hmgetArticles(misses)
+                .flatMap(values -> {
+                    for (Article article : values) {
+                        if (article != null) {
+                            entityCache.putArticle(article, generations.get(article.getId()));
+                            found.put(article.getId(), ArticleBodyStore.summary(article));
+                        }
+                    }
+                    return articleCounter.fill(new ArrayList<>(found.values()));
+                })
+                .map(filled -> {
+                    List<Article> articles = new ArrayList<>(ids.size());
+                    for (Long id : ids) {
+                        articles.add(found.get(id));
+                    }
+                    return articles;
+                });
+    }
+
+    /**
+     * 全文检索文章标题和内容，按相关度排序分页
+     *
+     * @param query  查询语句
+     * @param offset 跳过的结果数
+     * @param limit  每页数量
+     * @return 文章分页，next为下一页的offset
+     */
+    public Mono<Result<Page<Article>>> searchArticles(String query, int offset, int limit) {
+        List<Long> ids = articleSearchIndex.search(query);
+        if (offset >= ids.size()) {
+            return Mono.just(Result.ok(new Page<>(Collections.emptyList(), null)));
+        }
+
+        int end = Math.min(offset + limit, ids.size());
+        Long next = end < ids.size() ? (long) end : null;
+
+        return loadArticles(ids.subList(offset, end))
+                .map(articles -> {
+                    articles.removeIf(Objects::isNull);
+                    return Result.ok(new Page<>(articles, next));
+                });
+    }
+
+    /**
+     * 复制文章并填入最新计数，缓存中的对象保持不变
+     *
+     * @param article 文章
+     * @return 处理结果
+     */
+    private Mono<Result<Article>> withCounts(Article article) {
+        return articleCounter.fill(Collections.singletonList(article.toBuilder().build()))
+                .map(list -> Result.ok(list.get(0)));
+    }
+
+    /**
+     * 根据文章ID获取文章，直接返回序列化好的响应体
+     *
+     * @param id 文章id
+     * @return 响应体
+     */
+    public Mono<RawResult> getArticleRaw(Long id) {
+        RawResult cached = entityCache.getArticleResponse(id);
+        Mono<RawResult> raw = cached != null
+                ? Mono.just(cached)
+                : articleResponseLoads.execute(id, () -> {
+            long generation = entityCache.articleGeneration(id);
+            return Mono.zip(replicaRedisTemplate.<String, String>opsForHash().get(RedisKey.of(ARTICLE), id.toString()), body(id))
+                    .flatMap(tuple -> withoutCounts(tuple.getT1()).map(json -> withBody(json, tuple.getT2())))
+                    .map(json -> {
+                        RawResult result = RawResult.ok(json);
+                        entityCache.putArticleResponse(id, result, generation);
+                        return result;
+                    });
+        });
+
+        return raw
+                .doOnNext(result -> articleCounter.click(id))
+                .flatMap(result -> articleCounter.counts(id)
+                        .map(counts -> result.withTrailer(",\"clickCount\":" + counts[0] + ",\"commentCount\":" + counts[1])))
+                .switchIfEmpty(Mono.fromSupplier(() -> RawResult.of(Result.error(1, "文章不存在"))));
+    }
+
+    /**
+     * 把正文拼接进文章json，正文为空字符串（旧数据，正文在json中）时不变
+     *
+     * @param json 文章json
+     * @param body 正文
+     * @return 含正文的json
+     */
+    private static String withBody(String json, String body) {
+        if (body.isEmpty()) {
+            return json;
+        }
+        return json.substring(0, json.lastIndexOf('}')) + ",\"content\":" + JsonUtils.toString(body) + "}";
+    }
+
+    /**
+     * 旧数据的json中带有计数字段，迁移到计数器后从json中去掉，响应时再追加计数器的值
+     *
+     * @param json 文章json
+     * @return 不含计数的json
+     */
+    private Mono<String> withoutCounts(String json) {
+        if (!json.contains("\"clickCount\"") && !json.contains("\"commentCount\"")) {
+            return Mono.just(json);
+        }
+
+        Article article = JsonUtils.toObject(json, Article.class);
+        if (article == null) {
+            return Mono.just(json);
+        }
+
+        return articleCounter.seed(article)
+                .then(Mono.fromSupplier(() -> {
+                    article.setClickCount(null);
+                    article.setCommentCount(null);
+                    return JsonUtils.toString(article);
+                }));
+    }
+
+    /**
+     * 新增评论，评论数在同一个脚本中增加
+     *
+     * @param comment 评论
+     * @return 带id的评论
+     */
     public Mono<Result<Comment>> addComment(Comment comment) {
         Long articleId = comment.getArticleId();
         String redisKey = RedisKey.of(COMMENT, articleId.toString());
 
-        return null;
+        comment.setId(null);
+        comment.setGmtCreate(ZonedDateTime.now());
+
+        List<String> keys = Arrays.asList(redisKey, RedisKey.of(ARTICLE_COMMENT_COUNT), RedisKey.of(ARTICLE), RedisKey.of(ARTICLE_HOT));
+        List<String> args = Arrays.asList(articleId.toString(), JsonUtils.toString(comment), String.valueOf(maxCommentsPerArticle),
+                String.valueOf(hotArticleRanking.getCommentWeight()));
+
+        return redisTemplate.execute(RedisScripts.ADD_COMMENT, keys, args)
+                .next()
+                .map(id -> {
+                    if (id < 0) {
+                        return Result.<Comment>error(1, "文章不存在");
+                    }
+
+                    comment.setId(id);
+                    return Result.ok(comment);
+                })
+                .switchIfEmpty(Mono.just(Result.error(2, "数据库连接异常")));
     }
 
-    public Mono<List<Article>> getAllArticle() {
-        String redisKey = RedisKey.of(ARTICLE);
+    /**
+     * 按时间倒序分页获取文章评论
+     *
+     * @param articleId 文章id
+     * @param before    游标，只返回id小于该值的评论，为null时从最新开始
+     * @param limit     每页数量
+     * @return 评论分页
+     */
+    public Mono<Result<Page<Comment>>> getComments(Long articleId, Long before, int limit) {
+        String redisKey = RedisKey.of(COMMENT, articleId.toString());
+
+        return commentRedisTemplate.opsForZSet()
+                .reverseRangeByScore(redisKey, beforeRange(before), RedisZSetCommands.Limit.limit().count(limit))
+                .collectList()
+                .map(comments -> {
+                    Long next = comments.size() < limit ? null : comments.get(comments.size() - 1).getId();
+                    return Result.ok(new Page<>(comments, next));
+                });
+    }
+
+    /**
+     * 按时间倒序分页获取文章
+     *
+     * @param before 游标，只返回id小于该值的文章，为null时从最新开始
+     * @param limit  每页数量
+     * @return 文章分页
+     */
+    public Mono<Result<Page<Article>>> getArticlePage(Long before, int limit) {
+        return pageArticles(replicaRedisTemplate, RedisKey.of(ARTICLE_TIMELINE), before, limit)
+                .map(Result::ok);
+    }
 
-        return redisTemplate.opsForHash().values(redisKey)
-                .map(o -> JsonUtils.toObject(o.toString(), Article.class))
-                .collectList();
+    /**
+     * 按时间倒序分页获取指定用户的文章
+     *
+     * @param account 帐号
+     * @param before  游标，只返回id小于该值的文章，为null时从最新开始
+     * @param limit   每页数量
+     * @return 文章分页
+     */
+    public Mono<Result<Page<Article>>> getUserArticlePage(String account, Long before, int limit) {
+        return pageArticles(replicaRedisTemplate, RedisKey.of(USER_ARTICLE, account), before, limit)
+                .map(Result::ok);
+    }
+
+    /**
+     * 按用户、分面筛选文章，按时间倒序分页。
+     * 只有一个条件时直接读对应索引；多个条件时求交集，交集结果在Redis中缓存一小段时间供翻页使用
+     *
+     * @param account 帐号，为null时不按用户筛选
+     * @param facets  分面名 -> 分面值
+     * @param before  游标，只返回id小于该值的文章，为null时从最新开始
+     * @param limit   每页数量
+     * @return 文章分页
+     */
+    public Mono<Result<Page<Article>>> getFilteredArticlePage(String account, Map<String, String> facets, Long before, int limit) {
+        List<String> indexKeys = new ArrayList<>();
+        if (account != null) {
+            indexKeys.add(RedisKey.of(USER_ARTICLE, account));
+        }
+        for (Map.Entry<String, String> facet : facets.entrySet()) {
+            indexKeys.add(ArticleIndexes.facetKey(facet.getKey(), facet.getValue()));
+        }
+
+        if (indexKeys.isEmpty()) {
+            return getArticlePage(before, limit);
+        }
+        if (indexKeys.size() == 1) {
+            return pageArticles(replicaRedisTemplate, indexKeys.get(0), before, limit).map(Result::ok);
+        }
+
+        Collections.sort(indexKeys);
+        String filterKey = RedisKey.of(ARTICLE_FILTER, String.join("|", indexKeys));
+        List<String> keys = new ArrayList<>();
+        keys.add(filterKey);
+        keys.addAll(indexKeys);
+
+        return redisTemplate.execute(RedisScripts.ZINTER_CACHED, keys, Collections.singletonList(String.valueOf(Math.max(1, filterTtlSeconds))))
+                .next()
+                // 交集刚在主节点上生成，副本上可能还没有
+                .flatMap(size -> pageArticles(redisTemplate, filterKey, before, limit))
+                .map(Result::ok);
+    }
+
+    /**
+     * 热门文章
+     *
+     * @param limit 数量
+     * @return 按热度从高到低的文章
+     */
+    public Mono<Result<List<Article>>> getHotArticles(int limit) {
+        return hotArticleRanking.top(limit)
+                .flatMap(this::hmgetSummaries)
+                .flatMap(articleCounter::fill)
+                .map(Result::ok);
+    }
+
+    /**
+     * 按时间倒序流式输出全部文章，每次只从Redis取一批，内存占用与文章总数无关
+     *
+     * @return 文章流
+     */
+    public Flux<Article> streamAllArticle() {
+        String timelineKey = RedisKey.of(ARTICLE_TIMELINE);
+
+        return pageArticles(replicaRedisTemplate, timelineKey, null, STREAM_BATCH_SIZE)
+                .expand(page -> page.getNext() == null
+                        ? Mono.empty()
+                        : pageArticles(replicaRedisTemplate, timelineKey, page.getNext(), STREAM_BATCH_SIZE))
+                .concatMapIterable(Page::getList);
+    }
+
+    /**
+     * 从按时间排序的文章id索引(ZSET)中取一页，再用一次HMGET读取文章
+     *
+     * @param indexTemplate 读取索引的模板
+     * @param indexKey      索引key，score为文章id
+     * @param before        游标
+     * @param limit         每页数量
+     * @return 文章分页
+     */
+    private Mono<Page<Article>> pageArticles(ReactiveRedisTemplate<String, String> indexTemplate, String indexKey, Long before, int limit) {
+        return indexTemplate.opsForZSet()
+                .reverseRangeByScore(indexKey, beforeRange(before), RedisZSetCommands.Limit.limit().count(limit))
+                .collectList()
+                .flatMap(ids -> {
+                    if (ids.isEmpty()) {
+                        return Mono.just(new Page<Article>(Collections.emptyList(), null));
+                    }
+
+                    Long next = ids.size() < limit ? null : Long.valueOf(ids.get(ids.size() - 1));
+                    return hmgetSummaries(ids)
+                            .flatMap(articleCounter::fill)
+                            .map(articles -> new Page<>(articles, next));
+                });
+    }
+
+    /**
+     * 用一次HMGET读取文章
+     *
+     * @param ids 文章id
+     * @return 与ids一一对应的文章，不存在的为null
+     */
+    private Mono<List<Article>> hmgetArticles(List<String> ids) {
+        return RedisScripts.hmget(articleReplicaRedisTemplate, RedisKey.of(ARTICLE), ids,
+                articleReplicaRedisTemplate.getSerializationContext().<Article>getHashValueSerializationPair().getReader());
+    }
+
+    /**
+     * 用一次HMGET读取列表中返回的文章
+     *
+     * @param ids 文章id
+     * @return 文章（不含正文，带摘要），不存在的跳过
+     */
+    private Mono<List<Article>> hmgetSummaries(List<String> ids) {
+        return hmgetArticles(ids)
+                .map(values -> {
+                    List<Article> articles = new ArrayList<>(values.size());
+                    for (Article article : values) {
+                        if (article != null) {
+                            articles.add(ArticleBodyStore.summary(article));
+                        }
+                    }
+                    return articles;
+                });
+    }
+
+    /**
+     * 游标对应的score范围：[0, before)，before为null时不设上限。
+     * 文章id、评论id均为正数；spring-data-redis 2.0 的响应式ZSET命令不支持无界Range
+     *
+     * @param before 游标
+     * @return score范围
+     */
+    private static Range<Double> beforeRange(Long before) {
+        return Range.of(Range.Bound.inclusive(0D),
+                before == null ? Range.Bound.inclusive((double) Long.MAX_VALUE) : Range.Bound.exclusive(before.doubleValue()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.yyy.TourWeb.tools;
+
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 字符串的Redis序列化器，UTF-8编码后不小于阈值的内容用Deflate压缩。
+ * 压缩后的内容以0xFF开头（合法的UTF-8中不会出现该字节），读取时据此区分，未压缩的内容与普通字符串相同
+ *
+ * @author yyy
+ */
+public class CompressedStringSerializer implements RedisElementReader<String>, RedisElementWriter<String> {
+
+    private static final byte COMPRESSED = (byte) 0xFF;
+
+    private final int threshold;
+
+    /**
+     * @param threshold 压缩阈值（字节），不大于0时不压缩
+     */
+    public CompressedStringSerializer(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public ByteBuffer write(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (threshold <= 0 || bytes.length < threshold) {
+            return ByteBuffer.wrap(bytes);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            out.write(COMPRESSED);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            // 压缩无效（如已经是压缩过的内容）时保存原文
+            return out.size() < bytes.length ? ByteBuffer.wrap(out.toByteArray()) : ByteBuffer.wrap(bytes);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public String read(ByteBuffer buffer) {
+        if (!buffer.hasRemaining() || buffer.get(buffer.position()) != COMPRESSED) {
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+
+        byte[] input = new byte[buffer.remaining() - 1];
+        buffer.position(buffer.position() + 1);
+        buffer.get(input);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializationException("压缩内容不完整");
+                }
+                out.write(chunk, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new SerializationException("无法解压：" + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
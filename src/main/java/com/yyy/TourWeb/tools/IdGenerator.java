@@ -0,0 +1,73 @@
+package com.yyy.TourWeb.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake风格的id生成器：41位毫秒时间戳 + 4位节点号 + 8位毫秒内序号，共53位。
+ * 控制在53位以内，id作为ZSET的score（double）和前端js的number时都不会丢失精度。
+ * 状态只有一个AtomicLong（上一次生成的id），用CAS无锁生成；
+ * 同一毫秒序号用完或时钟回拨时继续沿用上一次的时间戳递增，不会重复也不会等待
+ *
+ * @author yyy
+ */
+public class IdGenerator {
+
+    /**
+     * 2018-01-01T00:00:00Z
+     */
+    private static final long EPOCH = 1514764800000L;
+
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点号必须在0到" + MAX_NODE_ID + "之间：" + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return id
+     */
+    public long nextId() {
+        while (true) {
+            long prev = last.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            long prevTimestamp = prev >>> TIMESTAMP_SHIFT;
+
+            long next;
+            if (now > prevTimestamp) {
+                next = (now << TIMESTAMP_SHIFT) | nodeBits;
+            } else if ((prev & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = prev + 1;
+            } else {
+                next = ((prevTimestamp + 1) << TIMESTAMP_SHIFT) | nodeBits;
+            }
+
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * id中的生成时间
+     *
+     * @param id id
+     * @return 毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+}
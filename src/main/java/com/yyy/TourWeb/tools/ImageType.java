@@ -0,0 +1,57 @@
+package com.yyy.TourWeb.tools;
+
+/**
+ * 允许上传的图片格式，按文件头识别，不信任文件名后缀
+ *
+ * @author yyy
+ */
+public enum ImageType {
+
+    JPG("jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    GIF("gif", new byte[]{'G', 'I', 'F', '8'}),
+    BMP("bmp", new byte[]{'B', 'M'});
+
+    /**
+     * 识别所需的最多字节数
+     */
+    public static final int HEADER_BYTES = 8;
+
+    private final String ext;
+
+    private final byte[] magic;
+
+    ImageType(String ext, byte[] magic) {
+        this.ext = ext;
+        this.magic = magic;
+    }
+
+    public String getExt() {
+        return ext;
+    }
+
+    /**
+     * 按文件头识别格式
+     *
+     * @param head   文件开头的字节
+     * @param length 有效长度
+     * @return 图片格式，无法识别时为null
+     */
+    public static ImageType sniff(byte[] head, int length) {
+        for (ImageType type : values()) {
+            if (length >= type.magic.length && startsWith(head, type.magic)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yyy.TourWeb.tools;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接在ByteBuffer上读写json的Redis序列化器，不经过中间的String；与 {@link JsonUtils} 使用同一个ObjectMapper配置，
+ * 写出的内容与JsonUtils.toString相同，已有数据、Lua脚本拼接的json及直接输出存储内容的接口都不受影响。
+ * 解析失败时抛出SerializationException，不再返回null
+ *
+ * @author yyy
+ */
+public class JsonRedisSerializer<T> implements RedisElementReader<T>, RedisElementWriter<T> {
+
+    private final JavaType type;
+
+    private final ObjectReader reader;
+
+    private final ObjectWriter writer;
+
+    public JsonRedisSerializer(Class<T> type) {
+        this.type = JsonUtils.getMapper().constructType(type);
+        this.reader = JsonUtils.getMapper().readerFor(this.type);
+        this.writer = JsonUtils.getMapper().writerFor(this.type);
+    }
+
+    /**
+     * key、hash字段为字符串，值（含hash的值）为指定类型的序列化配置
+     *
+     * @param type 值类型
+     * @param <T>  值类型
+     * @return 序列化配置
+     */
+    public static <T> RedisSerializationContext<String, T> context(Class<T> type) {
+        JsonRedisSerializer<T> json = new JsonRedisSerializer<>(type);
+        RedisSerializationContext.SerializationPair<String> string =
+                RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer());
+
+        // 不调用string()：spring-data-redis 2.0 的builder中string()会覆盖hashValue，默认即为UTF-8字符串
+        return RedisSerializationContext.<String, T>newSerializationContext()
+                .key(string)
+                .value(json, json)
+                .hashKey(string)
+                .hashValue(json, json)
+                .build();
+    }
+
+    /**
+     * 读取，空内容（HMGET脚本中不存在的字段）为null
+     */
+    @Override
+    public T read(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+
+        try {
+            if (buffer.hasArray()) {
+                return reader.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            return reader.readValue(new ByteBufferBackedInputStream(buffer.duplicate()));
+        } catch (IOException e) {
+            throw new SerializationException("无法解析为" + type.getRawClass().getSimpleName() + "：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ByteBuffer write(T value) {
+        try {
+            return ByteBuffer.wrap(writer.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new SerializationException("无法序列化" + type.getRawClass().getSimpleName() + "：" + e.getMessage(), e);
+        }
+    }
+}
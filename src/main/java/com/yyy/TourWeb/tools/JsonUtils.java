@@ -6,6 +6,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,8 +25,11 @@ public class JsonUtils {
     private static ObjectMapper mapper = new ObjectMapper();
 
     static {
+        // 与WebFlux的 spring.jackson.default-property-inclusion 保持一致，两条路径输出的json字段相同
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+        // 与WebFlux输出的日期格式保持一致，存储的json可以直接作为响应体输出；旧的时间戳格式仍可读取
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         JavaTimeModule module = new JavaTimeModule();
         mapper.registerModule(module);
     }
@@ -33,6 +37,15 @@ public class JsonUtils {
     private JsonUtils() {
     }
 
+    /**
+     * 共用的ObjectMapper，供需要直接读写字节的序列化器使用，调用方不应修改其配置
+     *
+     * @return ObjectMapper
+     */
+    public static ObjectMapper getMapper() {
+        return mapper;
+    }
+
     /**
      * 字符串转对象
      *
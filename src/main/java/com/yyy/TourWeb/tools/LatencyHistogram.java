@@ -0,0 +1,166 @@
+package com.yyy.TourWeb.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图（微秒），桶的划分与HdrHistogram相同：每个2的幂区间再等分为32个子桶，相对误差不超过1/32。
+ * 桶数固定（约1000个），记录时只做一次原子自增，不分配对象；分位数在读取时由各桶计数算出
+ *
+ * @author yyy
+ */
+public class LatencyHistogram {
+
+    /**
+     * 每个2的幂区间的子桶数为 2^SUB_BUCKET_BITS
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * 可记录的最大值（微秒，约38小时），超出的按最大值记录
+     */
+    static final long MAX_VALUE = (1L << 37) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(index(MAX_VALUE) + 1);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void recordNanos(long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros 微秒
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 合并另一个直方图的记录
+     *
+     * @param other 直方图
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length(); i++) {
+            long value = other.buckets.get(i);
+            if (value > 0) {
+                buckets.addAndGet(i, value);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(other.max.get());
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 分位数，返回所在桶的上界（不超过记录到的最大值），没有记录时为0
+     *
+     * @param quantile 0~1
+     * @return 微秒
+     */
+    public long quantile(double quantile) {
+        return quantiles(quantile)[0];
+    }
+
+    /**
+     * 一次读取多个分位数
+     *
+     * @param quantiles 0~1，从小到大
+     * @return 微秒，与参数一一对应
+     */
+    public long[] quantiles(double... quantiles) {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        long[] result = new long[quantiles.length];
+        if (total == 0) {
+            return result;
+        }
+
+        long maxValue = max.get();
+        int bucket = 0;
+        long seen = counts[0];
+        for (int i = 0; i < quantiles.length; i++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[i] * total));
+            while (seen < rank && bucket < counts.length - 1) {
+                seen += counts[++bucket];
+            }
+            result[i] = Math.min(upperBound(bucket), maxValue);
+        }
+        return result;
+    }
+
+    /**
+     * 次数、平均值、最大值及常用分位数，单位微秒
+     *
+     * @return 统计结果
+     */
+    public Map<String, Object> snapshot() {
+        long total = count.sum();
+        long[] values = quantiles(0.5, 0.9, 0.99, 0.999);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("mean", total == 0 ? 0 : sum.sum() / total);
+        result.put("p50", values[0]);
+        result.put("p90", values[1]);
+        result.put("p99", values[2]);
+        result.put("p999", values[3]);
+        result.put("max", max.get());
+        return result;
+    }
+
+    /**
+     * 小于64的值每个值一个桶；其余的值按最高位所在的区间右移，保留最高的6位，
+     * 区间号 * 32 + 保留的6位（32~63）即为桶号，相邻区间的桶号恰好连续
+     */
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (int) ((shift << SUB_BUCKET_BITS) + (value >>> shift));
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long upperBound(int index) {
+        int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+        long top = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+}
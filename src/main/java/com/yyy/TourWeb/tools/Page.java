@@ -0,0 +1,42 @@
+package com.yyy.TourWeb.tools;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ *
+ * @author yyy
+ */
+public class Page<T> {
+
+    protected List<T> list;
+
+    /**
+     * 下一页游标，为null时表示没有更多数据
+     */
+    protected Long next;
+
+    public Page() {
+    }
+
+    public Page(List<T> list, Long next) {
+        this.list = list;
+        this.next = next;
+    }
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public void setList(List<T> list) {
+        this.list = list;
+    }
+
+    public Long getNext() {
+        return next;
+    }
+
+    public void setNext(Long next) {
+        this.next = next;
+    }
+}
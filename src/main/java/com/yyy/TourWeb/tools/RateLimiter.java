@@ -0,0 +1,82 @@
+package com.yyy.TourWeb.tools;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内按key限流的令牌桶，无锁。
+ * 每个桶只记录一个时间：按匀速取令牌时桶恰好变空的时刻（GCRA），取令牌即用CAS把它后移一个令牌的间隔，
+ * 后移后超出当前时间一整桶以上说明桶已空。
+ * key数量超出上限时按访问频率淘汰（W-TinyLFU），被淘汰的key再次访问时得到一个满桶。
+ * 不按空闲时间移除：Caffeine的 expireAfterAccess 每次读取都要维护访问顺序，使一次检查从约50ns增至约300ns
+ *
+ * @author yyy
+ */
+public class RateLimiter {
+
+    /**
+     * 每个令牌的间隔
+     */
+    private final long intervalNanos;
+
+    /**
+     * 空桶补满的时间
+     */
+    private final long burstNanos;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst            桶容量，即允许的突发请求数
+     * @param maxKeys          最多记录的key数
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long maxKeys) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("每秒令牌数须大于0，桶容量须不小于1");
+        }
+        intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        burstNanos = intervalNanos * burst;
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .build();
+    }
+
+    /**
+     * 取一个令牌
+     *
+     * @param key key，如帐号、IP
+     * @return 0为成功；否则为还需等待的纳秒数
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long empty = bucket.get();
+            // 桶已满时从当前时间起算，时间比较用差值，不受nanoTime取值范围影响
+            long next = (empty - now > 0 ? empty : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(empty, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 当前记录的key数
+     *
+     * @return key数
+     */
+    public long size() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,122 @@
+package com.yyy.TourWeb.tools;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 已序列化好的 {@link Result} 响应体，直接把Redis中存储的json拼接进 data 字段，
+ * 读取时不再经过对象映射
+ *
+ * @author yyy
+ */
+public class RawResult {
+
+    private static final byte[] OK_PREFIX;
+    private static final byte[] SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+    private static final String WEAK_PREFIX = "W/";
+
+    static {
+        // {"code":0,"success":true,"msg":"成功"} -> {"code":0,"success":true,"msg":"成功","data":
+        String ok = JsonUtils.toString(Result.ok());
+        OK_PREFIX = (ok.substring(0, ok.length() - 1) + ",\"data\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private final byte[] body;
+
+    private final String etag;
+
+    /**
+     * 追加在data对象末尾的字段，如 ,"clickCount":1
+     */
+    private final byte[] trailer;
+
+    private RawResult(byte[] body) {
+        this.body = body;
+        this.etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        this.trailer = null;
+    }
+
+    private RawResult(byte[] body, String etag, byte[] trailer) {
+        this.body = body;
+        this.etag = etag;
+        this.trailer = trailer;
+    }
+
+    /**
+     * 成功结果
+     *
+     * @param dataJson data字段的json
+     * @return 响应体
+     */
+    public static RawResult ok(String dataJson) {
+        byte[] data = dataJson.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[OK_PREFIX.length + data.length + SUFFIX.length];
+
+        System.arraycopy(OK_PREFIX, 0, body, 0, OK_PREFIX.length);
+        System.arraycopy(data, 0, body, OK_PREFIX.length, data.length);
+        System.arraycopy(SUFFIX, 0, body, OK_PREFIX.length + data.length, SUFFIX.length);
+        return new RawResult(body);
+    }
+
+    /**
+     * 任意结果，用于错误等不常见的响应
+     *
+     * @param result 结果
+     * @return 响应体
+     */
+    public static RawResult of(Result<?> result) {
+        return new RawResult(JsonUtils.toString(result).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 在data对象末尾追加字段，响应体本身不复制。
+     * 追加的是点击数等每次都在变的计数，ETag只取存储的部分并标为弱校验：内容未变时仍可返回304，计数允许稍旧
+     *
+     * @param fieldsJson 以逗号开头的字段json，如 ,"clickCount":1
+     * @return 新的响应体
+     */
+    public RawResult withTrailer(String fieldsJson) {
+        byte[] bytes = fieldsJson.getBytes(StandardCharsets.UTF_8);
+        return new RawResult(body, WEAK_PREFIX + opaqueEtag(), bytes);
+    }
+
+    /**
+     * 包装为DataBuffer，不复制字节
+     *
+     * @param factory 响应的DataBufferFactory
+     * @return 响应体
+     */
+    public Flux<DataBuffer> toDataBuffers(DataBufferFactory factory) {
+        if (trailer == null) {
+            return Flux.just(factory.wrap(body));
+        }
+
+        // body 以 "}}" 结尾：data对象的结束和外层的结束，trailer插在两者之前
+        int split = body.length - 2;
+        return Flux.just(factory.wrap(ByteBuffer.wrap(body, 0, split).slice()),
+                factory.wrap(trailer),
+                factory.wrap(ByteBuffer.wrap(body, split, 2).slice()));
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * 去掉弱校验前缀的ETag，用于 If-None-Match 的弱比较
+     *
+     * @return 带引号的ETag
+     */
+    public String opaqueEtag() {
+        return etag.startsWith(WEAK_PREFIX) ? etag.substring(WEAK_PREFIX.length()) : etag;
+    }
+}
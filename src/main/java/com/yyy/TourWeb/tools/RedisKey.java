@@ -8,8 +8,19 @@ package com.yyy.TourWeb.tools;
 public class RedisKey {
     public static final String USER = "Users";
     public static final String ARTICLE = "Articles";
+    public static final String ARTICLE_BODY = "ArticleBodies";
+    public static final String ARTICLE_TIMELINE = "ArticleTimeline";
+    public static final String ARTICLE_CLICK_COUNT = "ArticleClickCount";
+    public static final String ARTICLE_COMMENT_COUNT = "ArticleCommentCount";
+    public static final String ARTICLE_HOT = "ArticleHot";
+    public static final String ARTICLE_HOT_LOCK = "ArticleHot:lock";
     public static final String USER_ARTICLE = "UserArticle:%s";
+    public static final String ARTICLE_FACET = "ArticleFacet:%s:%s";
+    public static final String ARTICLE_FILTER = "ArticleFilter:%s";
     public static final String COMMENT = "Comments:%s";
+    public static final String CACHE_CHANNEL = "CacheInvalidation";
+    public static final String UPLOAD_REF = "UploadRef";
+    public static final String RATE_LIMIT = "RateLimit:%s:%s";
 
     public static String of(String key, Object... args) {
         return String.format(key, args);
@@ -0,0 +1,161 @@
+package com.yyy.TourWeb.tools;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Redis Lua脚本，脚本文件位于 resources/scripts 下。
+ * 脚本内容按平台默认编码读取并发送，脚本文件只使用ASCII字符
+ *
+ * @author yyy
+ */
+public class RedisScripts {
+
+    /**
+     * HSCAN一页，返回 {cursor, field1, value1, ...}
+     */
+    public static final RedisScript<List<String>> HSCAN = loadList("hscan.lua");
+
+    /**
+     * PUBLISH，返回收到消息的订阅者数量
+     */
+    public static final RedisScript<Long> PUBLISH = load("publish.lua", Long.class);
+
+    /**
+     * 对同一个hash的多个字段批量HINCRBY，可同时按权重ZINCRBY一个ZSET，返回字段数
+     */
+    public static final RedisScript<Long> HINCRBY_BATCH = load("hincrby_batch.lua", Long.class);
+
+    /**
+     * HMGET，不存在的字段为空字符串
+     */
+    public static final RedisScript<List<Object>> HMGET = loadList("hmget.lua");
+
+    /**
+     * 新增评论并增加文章评论数，返回评论id，文章不存在时返回-1
+     */
+    public static final RedisScript<Long> ADD_COMMENT = load("add_comment.lua", Long.class);
+
+    /**
+     * 新增文章：写入正文、文章、初始化计数、写入各索引并增加图片引用数，返回索引数，id已存在时返回-1
+     */
+    public static final RedisScript<Long> CREATE_ARTICLE = load("create_article.lua", Long.class);
+
+    /**
+     * 多个索引求交集并短暂缓存结果，返回结果数
+     */
+    public static final RedisScript<Long> ZINTER_CACHED = load("zinter_cached.lua", Long.class);
+
+    /**
+     * 热门文章分数衰减并裁剪，返回剩余数量，本周期已由其它实例执行时返回-1
+     */
+    public static final RedisScript<Long> HOT_DECAY = load("hot_decay.lua", Long.class);
+
+    /**
+     * 滑动窗口限流，返回0为通过，否则为还需等待的毫秒数
+     */
+    public static final RedisScript<Long> SLIDING_WINDOW = load("sliding_window.lua", Long.class);
+
+    /**
+     * 删除引用数不大于0的上传文件引用记录，返回被删除的路径
+     */
+    public static final RedisScript<List<String>> UPLOAD_UNREF = loadList("upload_unref.lua");
+
+    private RedisScripts() {
+    }
+
+    /**
+     * HMGET，返回与fields一一对应的值，不存在的字段为null。
+     * spring-data-redis 2.0 的 ReactiveHashOperations.multiGet 遇到不存在的字段会出错
+     *
+     * @param redisTemplate 模板
+     * @param key           hash的key
+     * @param fields        字段
+     * @return 值
+     */
+    public static Mono<List<String>> hmget(ReactiveRedisTemplate<String, String> redisTemplate, String key, List<String> fields) {
+        if (fields.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+
+        return redisTemplate.execute(HMGET, Collections.singletonList(key), fields)
+                .next()
+                .map(list -> {
+                    List<String> values = new ArrayList<>(fields.size());
+                    for (Object value : list) {
+                        String string = (String) value;
+                        values.add(string.isEmpty() ? null : string);
+                    }
+                    return values;
+                });
+    }
+
+    /**
+     * HMGET，值由reader直接从返回的字节反序列化，不经过中间的String
+     *
+     * @param redisTemplate 模板，key须为字符串
+     * @param key           hash的key
+     * @param fields        字段
+     * @param reader        值的反序列化，空内容须返回null
+     * @param <T>           值类型
+     * @return 与fields一一对应的值，不存在的字段为null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Mono<List<T>> hmget(ReactiveRedisTemplate<String, ?> redisTemplate, String key, List<String> fields,
+                                          RedisElementReader<T> reader) {
+        if (fields.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+
+        // 返回列表时reader作用于每个元素，脚本结果的类型参数只是名义上的
+        RedisElementReader<List<Object>> listReader = (RedisElementReader<List<Object>>) (RedisElementReader<?>) reader;
+        return redisTemplate.execute(HMGET, Collections.singletonList(key), fields,
+                redisTemplate.getSerializationContext().getStringSerializationPair().getWriter(), listReader)
+                .next()
+                .map(list -> (List<T>) (List<?>) list);
+    }
+
+    /**
+     * 执行返回整数的脚本，参数中的ByteBuffer（如压缩后的正文）原样发送，其它参数按UTF-8字符串发送
+     *
+     * @param redisTemplate 模板，key须为字符串
+     * @param script        脚本
+     * @param keys          keys
+     * @param args          参数
+     * @return 脚本返回值
+     */
+    public static Mono<Long> executeBinary(ReactiveRedisTemplate<String, ?> redisTemplate, RedisScript<Long> script,
+                                           List<String> keys, List<?> args) {
+        RedisElementWriter<Object> argsWriter = arg -> arg instanceof ByteBuffer
+                ? ((ByteBuffer) arg).duplicate()
+                : ByteBuffer.wrap(arg.toString().getBytes(StandardCharsets.UTF_8));
+        RedisElementReader<Long> resultReader = buffer -> Long.valueOf(StandardCharsets.UTF_8.decode(buffer).toString());
+        return redisTemplate.execute(script, keys, args, argsWriter, resultReader).next();
+    }
+
+    /**
+     * 返回列表的脚本，元素类型由调用方保证
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> RedisScript<List<E>> loadList(String name) {
+        return load(name, (Class<List<E>>) (Class<?>) List.class);
+    }
+
+    private static <T> RedisScript<T> load(String name, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("scripts/" + name));
+        script.setResultType(resultType);
+        return script;
+    }
+}
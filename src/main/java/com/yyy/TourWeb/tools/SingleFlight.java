@@ -0,0 +1,79 @@
+package com.yyy.TourWeb.tools;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个key的并发加载：加载进行中时，后到的调用不再发起新的加载，而是等待同一个结果（含空和异常）。
+ * 加载结束后即移除，之后的调用重新加载，不做缓存。
+ * 某个调用方取消订阅不会中断加载，其他调用方照常收到结果
+ *
+ * @author yyy
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * 加载
+     *
+     * @param key    key
+     * @param loader 实际的加载，同一个key同时只执行一个
+     * @return 结果
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> loader) {
+        return Mono.defer(() -> {
+            calls.increment();
+            Mono<V> current = inFlight.get(key);
+            if (current != null) {
+                collapsed.increment();
+                return current;
+            }
+
+            MonoProcessor<V> processor = MonoProcessor.create();
+            current = inFlight.putIfAbsent(key, processor);
+            if (current != null) {
+                collapsed.increment();
+                return current;
+            }
+
+            // 先把结果交给所有调用方，再移除
+            Mono.defer(loader)
+                    .doFinally(signal -> inFlight.remove(key, processor))
+                    .subscribe(processor);
+            return processor;
+        });
+    }
+
+    /**
+     * 调用次数、合并到其他调用上的次数、正在进行的加载数
+     *
+     * @return 统计结果
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("calls", calls.sum());
+        result.put("collapsed", collapsed.sum());
+        result.put("inFlight", (long) inFlight.size());
+        return result;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+}
@@ -0,0 +1,63 @@
+package com.yyy.TourWeb.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全文检索分词：连续的字母数字为一个词（转小写），连续的中日韩文字按相邻两字切分（单字成词），其余字符作为分隔
+ *
+ * @author yyy
+ */
+public class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * 分词
+     *
+     * @param text 文本
+     * @return 词，按出现顺序，可重复
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            char c = text.charAt(i);
+
+            if (isCjk(c)) {
+                while (i < length && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    tokens.add(text.substring(start, i));
+                }
+                for (int j = start; j + 1 < i; j++) {
+                    tokens.add(text.substring(j, j + 2));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                while (i < length && Character.isLetterOrDigit(text.charAt(i)) && !isCjk(text.charAt(i))) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i).toLowerCase());
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,22 @@
+-- Append a comment and bump the article's comment count in one round trip.
+-- KEYS[1] = Comments:<articleId>, KEYS[2] = ArticleCommentCount, KEYS[3] = Articles, KEYS[4] = ArticleHot
+-- ARGV[1] = articleId, ARGV[2] = comment json without id, ARGV[3] = max comments kept (0 = unlimited),
+-- ARGV[4] = hot score added per comment
+-- Returns the new comment id (the article's comment sequence), or -1 if the article does not exist.
+if redis.call('HEXISTS', KEYS[3], ARGV[1]) == 0 then
+    return -1
+end
+
+local id = redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+local member = '{"id":' .. id .. ',' .. string.sub(ARGV[2], 2)
+redis.call('ZADD', KEYS[1], id, member)
+
+local cap = tonumber(ARGV[3])
+if cap > 0 then
+    redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -cap - 1)
+end
+
+if tonumber(ARGV[4]) ~= 0 then
+    redis.call('ZINCRBY', KEYS[4], ARGV[4], ARGV[1])
+end
+return id
@@ -0,0 +1,23 @@
+-- Create an article with its body, counters, indexes and image reference in one round trip.
+-- KEYS[1] = Articles, KEYS[2] = ArticleClickCount, KEYS[3] = ArticleCommentCount, KEYS[4] = ArticleBodies,
+-- KEYS[5] = UploadRef, KEYS[6..n] = time-ordered ZSET indexes the article belongs to (scored by id)
+-- ARGV[1] = article id, ARGV[2] = article json, ARGV[3] = encoded body,
+-- ARGV[4] = referenced upload path ('' = none)
+-- Returns the number of indexes written, or -1 if the id is already taken (nothing is written).
+if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then
+    return -1
+end
+
+-- first, so that a failing reference update leaves nothing behind
+if ARGV[4] ~= '' then
+    redis.call('HINCRBY', KEYS[5], ARGV[4], 1)
+end
+
+redis.call('HSET', KEYS[4], ARGV[1], ARGV[3])
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+redis.call('HSET', KEYS[2], ARGV[1], 1)
+redis.call('HSET', KEYS[3], ARGV[1], 0)
+for i = 6, #KEYS do
+    redis.call('ZADD', KEYS[i], ARGV[1], ARGV[1])
+end
+return #KEYS - 5
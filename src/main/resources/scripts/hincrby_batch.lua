@@ -0,0 +1,10 @@
+-- HINCRBY several fields of one hash; ARGV = weight, field1, delta1, field2, delta2, ...
+-- If KEYS[2] is given it is a ZSET whose members (the fields) also get ZINCRBY delta * weight.
+local weight = tonumber(ARGV[1])
+for i = 2, #ARGV, 2 do
+    redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+    if KEYS[2] and weight ~= 0 then
+        redis.call('ZINCRBY', KEYS[2], tonumber(ARGV[i + 1]) * weight, ARGV[i])
+    end
+end
+return (#ARGV - 1) / 2
@@ -0,0 +1,8 @@
+-- HMGET returning '' for missing fields (a nil would end the reply list on the client)
+local values = redis.call('HMGET', KEYS[1], unpack(ARGV))
+for i = 1, #ARGV do
+    if not values[i] then
+        values[i] = ''
+    end
+end
+return values
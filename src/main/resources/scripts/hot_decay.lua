@@ -0,0 +1,16 @@
+-- Decay all hot scores once, at most once per interval across instances.
+-- KEYS[1] = ArticleHot, KEYS[2] = lock key
+-- ARGV[1] = decay factor (0..1), ARGV[2] = lock ttl in seconds, ARGV[3] = minimum score kept,
+-- ARGV[4] = maximum members kept
+-- Returns the remaining size, or -1 if another instance already decayed in this interval.
+if not redis.call('SET', KEYS[2], '1', 'NX', 'EX', ARGV[2]) then
+    return -1
+end
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+
+redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[1], 'WEIGHTS', ARGV[1])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[3])
+redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[4]) - 1)
+return redis.call('ZCARD', KEYS[1])
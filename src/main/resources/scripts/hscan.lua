@@ -0,0 +1,7 @@
+-- HSCAN flattened into {cursor, field1, value1, field2, value2, ...}
+local result = redis.call('HSCAN', KEYS[1], ARGV[1], 'COUNT', ARGV[2])
+local out = { result[1] }
+for _, v in ipairs(result[2]) do
+    out[#out + 1] = v
+end
+return out
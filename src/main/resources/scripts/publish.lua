@@ -0,0 +1,2 @@
+-- PUBLISH, not available on the reactive template
+return redis.call('PUBLISH', KEYS[1], ARGV[1])
@@ -0,0 +1,17 @@
+-- Sliding window rate limit shared by all instances: one sorted set of request times per key.
+-- KEYS[1] = RateLimit:{scope}:{key}
+-- ARGV[1] = now in ms, ARGV[2] = window in ms, ARGV[3] = maximum requests in the window,
+-- ARGV[4] = unique member for this request
+-- Returns 0 if the request is allowed (and recorded), otherwise ms until the oldest request leaves the window.
+local now = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+    local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    return math.max(1, tonumber(oldest[2]) + window - now)
+end
+
+redis.call('ZADD', KEYS[1], now, ARGV[4])
+redis.call('PEXPIRE', KEYS[1], window)
+return 0
@@ -0,0 +1,14 @@
+-- Drop the reference counters of upload files that are no longer referenced.
+-- KEYS[1] = UploadRef
+-- ARGV = relative paths of the candidate files
+-- A counter that is missing or <= 0 is deleted and its path returned; paths with a
+-- positive counter (retained since the candidates were listed) are left untouched.
+local removed = {}
+for i = 1, #ARGV do
+    local ref = tonumber(redis.call('HGET', KEYS[1], ARGV[i]))
+    if ref == nil or ref <= 0 then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+        removed[#removed + 1] = ARGV[i]
+    end
+end
+return removed
@@ -0,0 +1,15 @@
+-- Intersect time-ordered ZSET indexes into a short-lived result key.
+-- KEYS[1] = result key, KEYS[2..n] = source indexes (scored by article id)
+-- ARGV[1] = result ttl in seconds
+-- The result is reused until it expires; returns its size.
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    local args = {'ZINTERSTORE', KEYS[1], #KEYS - 1}
+    for i = 2, #KEYS do
+        args[#args + 1] = KEYS[i]
+    end
+    args[#args + 1] = 'AGGREGATE'
+    args[#args + 1] = 'MAX'
+    redis.call(unpack(args))
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+return redis.call('ZCARD', KEYS[1])
@@ -0,0 +1,102 @@
+package com.yyy.TourWeb;
+
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.FileSystemUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 连接真实Redis的测试：整个测试进程共用一个embedded-redis（随机端口、不持久化）和一个上传目录，
+ * 所有子类共用同一个Spring容器，每个测试开始前清空Redis
+ *
+ * @author yyy
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureWebTestClient
+@ContextConfiguration(initializers = IntegrationTest.EmbeddedRedis.class)
+public abstract class IntegrationTest {
+
+    @Autowired
+    protected ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    protected WebTestClient webClient;
+
+    @Before
+    public void flushRedis() {
+        redisTemplate.execute(connection -> connection.serverCommands().flushDb()).blockLast();
+    }
+
+    /**
+     * 上传目录
+     *
+     * @return 目录
+     */
+    protected static Path uploadDir() {
+        return EmbeddedRedis.uploadDir;
+    }
+
+    public static class EmbeddedRedis implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        private static RedisServer server;
+
+        private static int port;
+
+        private static Path uploadDir;
+
+        @Override
+        public void initialize(ConfigurableApplicationContext context) {
+            start();
+            TestPropertyValues.of(
+                    "spring.redis.host=127.0.0.1",
+                    "spring.redis.port=" + port,
+                    "spring.redis.password=",
+                    "spring.redis.database=0",
+                    "tourweb.index.rebuild-on-startup=false",
+                    "tourweb.search.build-on-startup=false",
+                    "tourweb.ratelimit.enabled=false",
+                    "tourweb.upload.dir=" + uploadDir,
+                    "tourweb.upload.gc-grace-seconds=60")
+                    .applyTo(context);
+        }
+
+        private static synchronized void start() {
+            if (server != null) {
+                return;
+            }
+
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+                uploadDir = Files.createTempDirectory("tourweb-test");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            server = RedisServer.builder().port(port).bind("127.0.0.1")
+                    .setting("save \"\"").setting("appendonly no")
+                    .build();
+            server.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                FileSystemUtils.deleteRecursively(uploadDir.toFile());
+            }));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.yyy.TourWeb.routes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.JsonUtils;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArticlePageRouteTest extends IntegrationTest {
+
+    private static final MediaType NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void emptyCollections() {
+        JsonNode page = get("/api/user/articles?limit=5");
+        assertEquals(0, page.get("list").size());
+        assertFalse(page.hasNonNull("next"));
+
+        JsonNode timeline = get("/api/user/nobody/articles");
+        assertEquals(0, timeline.get("list").size());
+        assertFalse(timeline.hasNonNull("next"));
+
+        assertEquals(Collections.emptyList(), stream(NDJSON));
+    }
+
+    @Test
+    public void lastPartialPageHasNoCursor() {
+        List<Long> ids = addArticles("tester", 5);
+
+        JsonNode first = get("/api/user/articles?limit=2");
+        assertEquals(list(ids.get(4), ids.get(3)), ids(first));
+        assertEquals(ids.get(3).longValue(), first.get("next").asLong());
+
+        JsonNode second = get("/api/user/articles?limit=2&before=" + first.get("next").asLong());
+        assertEquals(list(ids.get(2), ids.get(1)), ids(second));
+
+        JsonNode last = get("/api/user/articles?limit=2&before=" + second.get("next").asLong());
+        assertEquals(list(ids.get(0)), ids(last));
+        assertFalse(last.hasNonNull("next"));
+    }
+
+    @Test
+    public void pageSizeEqualToCount() {
+        List<Long> ids = addArticles("tester", 4);
+
+        // 恰好取完时仍给出游标，下一页为空且没有游标
+        JsonNode full = get("/api/user/articles?limit=4");
+        assertEquals(4, full.get("list").size());
+        assertEquals(ids.get(0).longValue(), full.get("next").asLong());
+
+        JsonNode empty = get("/api/user/articles?limit=4&before=" + full.get("next").asLong());
+        assertEquals(0, empty.get("list").size());
+        assertFalse(empty.hasNonNull("next"));
+    }
+
+    @Test
+    public void timelineHasOnlyTheUsersArticlesNewestFirst() {
+        List<Long> mine = addArticles("alice", 2);
+        addArticles("bob", 1);
+        mine.addAll(addArticles("alice", 1));
+
+        JsonNode page = get("/api/user/alice/articles");
+        assertEquals(list(mine.get(2), mine.get(1), mine.get(0)), ids(page));
+        for (JsonNode article : page.get("list")) {
+            assertEquals("alice", article.get("userAccount").asText());
+        }
+        assertFalse(page.hasNonNull("next"));
+    }
+
+    @Test
+    public void streamsAllArticlesAcrossBatches() {
+        // 多于一批（100篇），经过一次续取
+        List<Long> ids = addArticles("tester", 101);
+        Collections.reverse(ids);
+
+        assertEquals(ids, stream(NDJSON));
+    }
+
+    @Test
+    public void streamsServerSentEvents() {
+        List<Long> ids = addArticles("tester", 3);
+        Collections.reverse(ids);
+
+        String body = webClient.get().uri("/api/user/articles").accept(MediaType.TEXT_EVENT_STREAM).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        List<Long> streamed = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.startsWith("data:")) {
+                streamed.add(JsonUtils.toJsonNode(line.substring("data:".length())).get("id").asLong());
+            }
+        }
+        assertEquals(ids, streamed);
+    }
+
+    private List<Long> addArticles(String account, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Article article = Article.builder().title("标题" + i).content("正文").userAccount(account).isForeign(false).build();
+            userService.addArticle(article).block();
+            ids.add(article.getId());
+        }
+        return ids;
+    }
+
+    private JsonNode get(String uri) {
+        String body = webClient.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        return JsonUtils.toJsonNode(body).get("data");
+    }
+
+    /**
+     * 流式输出的文章id，每行一篇
+     */
+    private List<Long> stream(MediaType type) {
+        String body = webClient.get().uri("/api/user/articles").accept(type).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(type)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        List<Long> ids = new ArrayList<>();
+        if (body == null) {
+            return ids;
+        }
+        for (String line : body.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                JsonNode article = JsonUtils.toJsonNode(line);
+                assertTrue(line, article.has("title"));
+                ids.add(article.get("id").asLong());
+            }
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode article : page.get("list")) {
+            ids.add(article.get("id").asLong());
+        }
+        return ids;
+    }
+
+    private static List<Long> list(Long... ids) {
+        List<Long> list = new ArrayList<>();
+        Collections.addAll(list, ids);
+        return list;
+    }
+}
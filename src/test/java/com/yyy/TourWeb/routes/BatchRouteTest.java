@@ -0,0 +1,98 @@
+package com.yyy.TourWeb.routes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.yyy.TourWeb.tools.RedisKey.USER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRouteTest extends IntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void articlesFollowRequestOrder() {
+        Long first = addArticle("第一篇");
+        Long second = addArticle("第二篇");
+        Long missing = second + 1000;
+
+        JsonNode list = post("/api/user/articles/batch", Arrays.asList(second, missing, first, second));
+
+        // 与请求一一对应：重复的id各占一个位置，不存在的为null
+        assertEquals(4, list.size());
+        assertEquals(second.longValue(), list.get(0).get("id").asLong());
+        assertTrue(list.get(1).isNull());
+        assertEquals(first.longValue(), list.get(2).get("id").asLong());
+        assertEquals(list.get(0), list.get(3));
+        assertEquals("第二篇", list.get(0).get("title").asText());
+    }
+
+    @Test
+    public void usersFollowRequestOrder() {
+        redisTemplate.opsForHash().put(RedisKey.of(USER), "b", "{\"account\":\"b\",\"password\":\"x\"}").block();
+        redisTemplate.opsForHash().put(RedisKey.of(USER), "a", "{\"account\":\"a\",\"password\":\"x\"}").block();
+
+        JsonNode list = post("/api/user/info/batch", Arrays.asList("a", "nobody", "b", "a"));
+
+        assertEquals(4, list.size());
+        assertEquals("a", list.get(0).get("account").asText());
+        assertTrue(list.get(1).isNull());
+        assertEquals("b", list.get(2).get("account").asText());
+        assertEquals("a", list.get(3).get("account").asText());
+    }
+
+    @Test
+    public void rejectsNullIdsAndOversizedBatches() {
+        badRequest("/api/user/articles/batch", "[1,null]");
+        badRequest("/api/user/info/batch", "[\"a\",null]");
+        badRequest("/api/user/articles/batch", "[]");
+        badRequest("/api/user/articles/batch", ids(101).toString());
+
+        assertEquals(100, post("/api/user/articles/batch", ids(100)).size());
+    }
+
+    private Long addArticle(String title) {
+        Article article = Article.builder().title(title).content("正文").userAccount("tester").isForeign(false).build();
+        userService.addArticle(article).block();
+        return article.getId();
+    }
+
+    private JsonNode post(String uri, Object body) {
+        String response = webClient.post().uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        return JsonUtils.toJsonNode(response).get("data");
+    }
+
+    private void badRequest(String uri, String body) {
+        webClient.post().uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private static List<Long> ids(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+}
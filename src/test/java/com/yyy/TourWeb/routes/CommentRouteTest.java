@@ -0,0 +1,142 @@
+package com.yyy.TourWeb.routes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.Comment;
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.yyy.TourWeb.tools.RedisKey.COMMENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommentRouteTest extends IntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    private Long articleId;
+
+    @Before
+    public void createArticle() {
+        Article article = Article.builder().title("标题").content("正文").userAccount("tester").isForeign(false).build();
+        userService.addArticle(article).block();
+        articleId = article.getId();
+    }
+
+    @Test
+    public void commentingOnMissingArticleFails() {
+        JsonNode result = comment(articleId + 1, "评论");
+
+        assertEquals(1, result.get("code").asInt());
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey(RedisKey.of(COMMENT, String.valueOf(articleId + 1))).block());
+        assertEquals(0, page(articleId + 1, null, 10).get("list").size());
+    }
+
+    @Test
+    public void pagesNewestFirstByCursor() {
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, comment(articleId, "评论" + i).get("data").get("id").asLong());
+        }
+
+        JsonNode first = page(articleId, null, 2);
+        assertEquals(ids(5, 4), ids(first));
+        assertEquals(4, first.get("next").asLong());
+
+        JsonNode second = page(articleId, first.get("next").asLong(), 2);
+        assertEquals(ids(3, 2), ids(second));
+
+        // 最后一页不足一页，没有下一页
+        JsonNode last = page(articleId, second.get("next").asLong(), 2);
+        assertEquals(ids(1), ids(last));
+        assertFalse(last.hasNonNull("next"));
+    }
+
+    @Test
+    public void fullLastPageIsFollowedByEmptyPage() {
+        for (int i = 1; i <= 4; i++) {
+            comment(articleId, "评论" + i);
+        }
+
+        JsonNode second = page(articleId, page(articleId, null, 2).get("next").asLong(), 2);
+        assertEquals(ids(2, 1), ids(second));
+        // 恰好满页时仍给出游标，下一页为空且没有游标
+        assertTrue(second.hasNonNull("next"));
+        JsonNode empty = page(articleId, second.get("next").asLong(), 2);
+        assertEquals(0, empty.get("list").size());
+        assertFalse(empty.hasNonNull("next"));
+    }
+
+    @Test
+    public void trimsOldestCommentsAtCap() {
+        Object cap = ReflectionTestUtils.getField(userService, "maxCommentsPerArticle");
+        ReflectionTestUtils.setField(userService, "maxCommentsPerArticle", 3);
+        try {
+            for (int i = 1; i <= 5; i++) {
+                comment(articleId, "评论" + i);
+            }
+        } finally {
+            ReflectionTestUtils.setField(userService, "maxCommentsPerArticle", cap);
+        }
+
+        assertEquals(Long.valueOf(3), redisTemplate.opsForZSet().size(RedisKey.of(COMMENT, articleId.toString())).block());
+        assertEquals(ids(5, 4, 3), ids(page(articleId, null, 10)));
+    }
+
+    @Test
+    public void commentCountShowsInArticle() {
+        comment(articleId, "评论1");
+        comment(articleId, "评论2");
+
+        String body = webClient.get().uri("/api/user/article/" + articleId).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertEquals(2, JsonUtils.toJsonNode(body).get("data").get("commentCount").asInt());
+    }
+
+    private JsonNode comment(Long articleId, String content) {
+        Comment comment = new Comment(null, content, "tester", articleId, null);
+        String body = webClient.post().uri("/api/user/comment/" + articleId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(comment)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        return JsonUtils.toJsonNode(body);
+    }
+
+    private JsonNode page(Long articleId, Long before, int limit) {
+        String uri = "/api/user/comment/" + articleId + "?limit=" + limit + (before == null ? "" : "&before=" + before);
+        String body = webClient.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        return JsonUtils.toJsonNode(body).get("data");
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode comment : page.get("list")) {
+            ids.add(comment.get("id").asLong());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(long... values) {
+        List<Long> ids = new ArrayList<>();
+        for (long value : values) {
+            ids.add(value);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yyy.TourWeb.routes;
+
+import com.yyy.TourWeb.IntegrationTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class UploadRouteTest extends IntegrationTest {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private static final String CONTENT_PATH = "01/23/" + HASH + ".png";
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @Before
+    public void createFiles() throws IOException {
+        write(CONTENT_PATH);
+        write("legacy.png");
+    }
+
+    @Test
+    public void contentEtagSurvivesDuplicateUpload() throws IOException {
+        HttpHeaders headers = webClient.get().uri("/upload/" + CONTENT_PATH).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + HASH + "\"")
+                .returnResult(byte[].class).getResponseHeaders();
+        assertNull(headers.getFirst(HttpHeaders.LAST_MODIFIED));
+
+        // 重复上传刷新修改时间，ETag不变
+        Files.setLastModifiedTime(uploadDir().resolve(CONTENT_PATH), FileTime.fromMillis(System.currentTimeMillis() + 60000));
+        webClient.get().uri("/upload/" + CONTENT_PATH).header(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\"").exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + HASH + "\"");
+    }
+
+    @Test
+    public void legacyFileKeepsModificationTime() throws IOException {
+        HttpHeaders headers = webClient.get().uri("/upload/legacy.png").exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders();
+        assertNotNull(headers.getFirst(HttpHeaders.LAST_MODIFIED));
+        long modified = Files.getLastModifiedTime(uploadDir().resolve("legacy.png")).toMillis();
+        assertEquals("\"" + Long.toHexString(modified) + "-" + Long.toHexString(CONTENT.length) + "\"", headers.getETag());
+
+        webClient.get().uri("/upload/legacy.png").header(HttpHeaders.IF_MODIFIED_SINCE, headers.getFirst(HttpHeaders.LAST_MODIFIED)).exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertEquals(headers.getETag(), webClient.get().uri("/upload/legacy.png").exchange()
+                .returnResult(byte[].class).getResponseHeaders().getETag());
+    }
+
+    @Test
+    public void servesRangesWithCachingHeaders() {
+        byte[] body = webClient.get().uri("/upload/" + CONTENT_PATH).header(HttpHeaders.RANGE, "bytes=2-5").exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals("2345".getBytes(), body);
+
+        webClient.get().uri("/upload/" + CONTENT_PATH).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .expectHeader().contentLength(CONTENT.length);
+    }
+
+    @Test
+    public void conditionalRequests() {
+        // ETag不匹配时返回完整内容，If-None-Match 优先于 If-Modified-Since
+        webClient.get().uri("/upload/legacy.png")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"other\"")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 01 Jan 2100 00:00:00 GMT")
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/upload/legacy.png").header(HttpHeaders.IF_NONE_MATCH, "*").exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+        webClient.get().uri("/upload/legacy.png").header(HttpHeaders.IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT").exchange()
+                .expectStatus().isOk();
+        // 按内容存放的文件只按ETag判断
+        webClient.get().uri("/upload/" + CONTENT_PATH).header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 01 Jan 2100 00:00:00 GMT").exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void thumbnailsHaveTheirOwnEtag() throws IOException {
+        String name = "45/67/" + HASH + ".png";
+        Path file = uploadDir().resolve(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+
+        webClient.get().uri("/upload/" + name + "?w=50").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + HASH + "-w64\"");
+        webClient.get().uri("/upload/" + name + "?w=abc").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + HASH + "\"");
+    }
+
+    @Test
+    public void missingFilesAreNotFound() {
+        webClient.get().uri("/upload/01/23/missing.png").exchange().expectStatus().isNotFound();
+        webClient.get().uri("/upload/.variants/w64/" + CONTENT_PATH).exchange().expectStatus().isNotFound();
+    }
+
+    private static void write(String name) throws IOException {
+        Path file = uploadDir().resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, CONTENT);
+    }
+}
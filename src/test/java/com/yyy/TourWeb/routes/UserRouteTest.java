@@ -0,0 +1,87 @@
+package com.yyy.TourWeb.routes;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.service.UserService;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_BODY;
+import static com.yyy.TourWeb.tools.RedisKey.USER;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserRouteTest extends IntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void articleEtagIgnoresCounters() {
+        Article article = Article.builder().title("标题").content("正文").userAccount("tester").isForeign(false).build();
+        userService.addArticle(article).block();
+        String uri = "/api/user/article/" + article.getId();
+
+        String first = webClient.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+        String second = webClient.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        // 每次浏览点击数都会变，ETag不变
+        assertTrue(first.startsWith("W/\""));
+        assertEquals(first, second);
+
+        webClient.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, first).exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+        // 去掉弱校验前缀的同一个值也命中
+        webClient.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, first.substring(2)).exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    public void longBodiesAreStoredCompressed() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("很长的正文").append(i);
+        }
+        Article article = Article.builder().title("长文").content(content.toString()).userAccount("tester").isForeign(false).build();
+        userService.addArticle(article).block();
+
+        // 超过压缩阈值，存放的是压缩后的字节，不是原文
+        String stored = (String) redisTemplate.opsForHash().get(RedisKey.of(ARTICLE_BODY), article.getId().toString()).block();
+        assertFalse(content.toString().equals(stored));
+        assertEquals(content.toString(), userService.getArticle(article.getId()).block().getData().getContent());
+    }
+
+    @Test
+    public void encodedResponsesOmitNullFields() {
+        redisTemplate.opsForHash().put(RedisKey.of(USER), "nulls", "{\"account\":\"nulls\",\"password\":\"x\"}").block();
+
+        // 经WebFlux编码的响应与缓存的响应体一样省略null字段，密码已置null，不应输出
+        String batch = webClient.post().uri("/api/user/info/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(Arrays.asList("nulls", "nobody"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertFalse(batch, batch.contains("password"));
+        assertFalse(batch, batch.contains("iconPath"));
+        // 不存在的用户仍占一个位置
+        assertTrue(batch, batch.contains("null]"));
+
+        String single = webClient.get().uri("/api/user/info/nulls").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertFalse(single, single.contains("password"));
+    }
+}
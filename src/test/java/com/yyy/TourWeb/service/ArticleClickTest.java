@@ -0,0 +1,52 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.RedisKey;
+import com.yyy.TourWeb.tools.Result;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_CLICK_COUNT;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ArticleClickTest extends IntegrationTest {
+
+    private static final Long MISSING_ID = 42L;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ArticleCounter articleCounter;
+
+    @Test
+    public void clickOnMissingArticleIsNotCounted() {
+        assertEquals(Integer.valueOf(1), userService.getArticle(MISSING_ID).block().getCode());
+        assertFalse(new String(userService.getArticleRaw(MISSING_ID).block().getBody()).contains("\"code\":0"));
+        articleCounter.flush();
+
+        assertNull(redisTemplate.opsForHash().get(RedisKey.of(ARTICLE_CLICK_COUNT), MISSING_ID.toString()).block());
+        assertNull(redisTemplate.opsForZSet().score(RedisKey.of(ARTICLE_HOT), MISSING_ID.toString()).block());
+    }
+
+    @Test
+    public void clickOnExistingArticleIsCounted() {
+        Article article = Article.builder().title("标题").content("正文").userAccount("tester").isForeign(false).build();
+        assertEquals(Integer.valueOf(0), userService.addArticle(article).block().getCode());
+        Long id = article.getId();
+
+        // 新文章的点击数从1开始
+        Result<Article> result = userService.getArticle(id).block();
+        assertEquals(Integer.valueOf(2), result.getData().getClickCount());
+        userService.getArticleRaw(id).block();
+        articleCounter.flush();
+
+        assertEquals("3", redisTemplate.opsForHash().get(RedisKey.of(ARTICLE_CLICK_COUNT), id.toString()).block());
+        assertEquals(Boolean.TRUE, redisTemplate.opsForHash().hasKey(RedisKey.of(ARTICLE), id.toString()).block());
+    }
+}
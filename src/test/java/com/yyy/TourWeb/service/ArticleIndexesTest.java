@@ -0,0 +1,32 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArticleIndexesTest {
+
+    @Test
+    public void keysIncludeTimelineUserAndFacets() {
+        Article article = Article.builder().userAccount("tester").isForeign(true).build();
+
+        assertEquals(Arrays.asList("ArticleTimeline", "UserArticle:tester", "ArticleFacet:foreign:true"),
+                ArticleIndexes.keys(article));
+    }
+
+    @Test
+    public void articlesWithoutFacetValueSkipFacet() {
+        Article article = Article.builder().userAccount("tester").build();
+
+        assertEquals(Arrays.asList("ArticleTimeline", "UserArticle:tester"), ArticleIndexes.keys(article));
+    }
+
+    @Test
+    public void facetValuesAreCaseInsensitive() {
+        assertEquals("ArticleFacet:foreign:false", ArticleIndexes.facetKey("foreign", "FALSE"));
+        assertEquals(ArticleIndexes.facetKey("foreign", "True"), ArticleIndexes.facetKey("foreign", "true"));
+    }
+}
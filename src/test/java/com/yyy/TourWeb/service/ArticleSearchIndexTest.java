@@ -0,0 +1,38 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.Tokenizer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArticleSearchIndexTest {
+
+    @Test
+    public void tokenizesCjkAsBigrams() {
+        assertEquals(Arrays.asList("北京", "京故", "故宫", "day1", "游"), Tokenizer.tokenize("北京故宫 Day1，游"));
+    }
+
+    @Test
+    public void ranksTitleMatchesFirstAndRequiresAllTerms() {
+        ArticleSearchIndex index = new ArticleSearchIndex();
+        index.add(article(1L, "上海外滩", "夜景很美，顺便去了故宫"));
+        index.add(article(2L, "故宫一日游", "人很多"));
+        index.add(article(3L, "杭州西湖", "断桥"));
+        // 重复加入不影响结果
+        index.add(article(2L, "故宫一日游", "人很多"));
+
+        assertEquals(Arrays.asList(2L, 1L), index.search("故宫"));
+        assertEquals(Collections.singletonList(1L), index.search("故宫 夜景"));
+        assertTrue(index.search("长城").isEmpty());
+        assertTrue(index.search("，").isEmpty());
+    }
+
+    private static Article article(Long id, String title, String content) {
+        return Article.builder().id(id).title(title).content(content).build();
+    }
+}
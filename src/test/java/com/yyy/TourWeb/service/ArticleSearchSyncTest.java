@@ -0,0 +1,61 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.JsonUtils;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE;
+import static com.yyy.TourWeb.tools.RedisKey.CACHE_CHANNEL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ArticleSearchSyncTest extends IntegrationTest {
+
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    @Autowired
+    private ArticleSearchSync articleSearchSync;
+
+    @Autowired
+    private ArticleBodyStore articleBodyStore;
+
+    @Test
+    public void indexesArticlesCreatedByOtherInstances() throws InterruptedException {
+        // 模拟其它实例新增的文章：只写入Redis，本地索引中没有
+        Long id = 9000000001L;
+        Article meta = Article.builder().id(id).title("远端").excerpt("摘要").userAccount("tester").build();
+        redisTemplate.opsForHash().put(RedisKey.of(ARTICLE), id.toString(), JsonUtils.toString(meta)).block();
+        articleBodyStore.put(id, "正文里有琉璃塔").block();
+
+        // 缓存失效消息与检索索引无关
+        articleSearchSync.onMessage(message("article:" + id), null);
+        Thread.sleep(200);
+        assertFalse(articleSearchIndex.contains(id));
+
+        articleSearchSync.onMessage(message("article-created:" + id), null);
+        for (int i = 0; i < 100 && !articleSearchIndex.contains(id); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(Collections.singletonList(id), articleSearchIndex.search("琉璃塔"));
+    }
+
+    @Test
+    public void ignoresMissingArticlesAndBadMessages() throws InterruptedException {
+        articleSearchSync.onMessage(message("article-created:9000000002"), null);
+        articleSearchSync.onMessage(message("article-created:abc"), null);
+        Thread.sleep(200);
+        assertFalse(articleSearchIndex.contains(9000000002L));
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(RedisKey.of(CACHE_CHANNEL).getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
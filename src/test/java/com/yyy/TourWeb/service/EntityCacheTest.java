@@ -0,0 +1,73 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.tools.RawResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EntityCacheTest {
+
+    private EntityCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new EntityCache();
+        ReflectionTestUtils.setField(cache, "articleMaxSize", 100L);
+        ReflectionTestUtils.setField(cache, "userMaxSize", 100L);
+        ReflectionTestUtils.setField(cache, "responseMaxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    public void keepsLoadsWithoutInvalidation() {
+        cache.putArticle(article(), cache.articleGeneration(1L));
+        cache.putUser(user(), cache.userGeneration("tester"));
+
+        assertNotNull(cache.getArticle(1L));
+        assertNotNull(cache.getUser("tester"));
+    }
+
+    @Test
+    public void dropsLoadsThatRacedWithInvalidation() {
+        // 加载开始后收到其它实例的失效消息，加载到的可能是失效前的数据
+        long articleGeneration = cache.articleGeneration(1L);
+        long userGeneration = cache.userGeneration("tester");
+        cache.onMessage(message("article:1"), null);
+        cache.onMessage(message("user:tester"), null);
+
+        cache.putArticle(article(), articleGeneration);
+        cache.putArticleResponse(1L, RawResult.ok("{}"), articleGeneration);
+        cache.putUser(user(), userGeneration);
+        cache.putUserResponse("tester", RawResult.ok("{}"), userGeneration);
+
+        assertNull(cache.getArticle(1L));
+        assertNull(cache.getArticleResponse(1L));
+        assertNull(cache.getUser("tester"));
+        assertNull(cache.getUserResponse("tester"));
+
+        // 失效之后开始的加载正常写入
+        cache.putArticle(article(), cache.articleGeneration(1L));
+        assertNotNull(cache.getArticle(1L));
+    }
+
+    private static Article article() {
+        return Article.builder().id(1L).title("标题").build();
+    }
+
+    private static User user() {
+        return new User("tester", null, null);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("CacheInvalidation".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.tools.Page;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FilteredArticlePageTest extends IntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * 按创建顺序：a国外、b国内、a国内、a国外、b国外、a国外、a国内
+     */
+    private final List<Long> ids = new ArrayList<>();
+
+    @Before
+    public void createArticles() {
+        String[] accounts = {"a", "b", "a", "a", "b", "a", "a"};
+        boolean[] foreign = {true, false, false, true, true, true, false};
+        for (int i = 0; i < accounts.length; i++) {
+            Article article = Article.builder().title("标题" + i).content("正文").userAccount(accounts[i]).isForeign(foreign[i]).build();
+            userService.addArticle(article).block();
+            ids.add(article.getId());
+        }
+    }
+
+    @Test
+    public void intersectsUserAndFacetNewestFirst() {
+        Map<String, String> foreign = Collections.singletonMap("foreign", "true");
+
+        Page<Article> first = userService.getFilteredArticlePage("a", foreign, null, 2).block().getData();
+        assertEquals(list(ids.get(5), ids.get(3)), ids(first));
+        assertEquals(ids.get(3), first.getNext());
+
+        Page<Article> second = userService.getFilteredArticlePage("a", foreign, first.getNext(), 2).block().getData();
+        assertEquals(list(ids.get(0)), ids(second));
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void singleConditionReadsIndexDirectly() {
+        Page<Article> domestic = userService.getFilteredArticlePage(null, Collections.singletonMap("foreign", "FALSE"), null, 10)
+                .block().getData();
+        assertEquals(list(ids.get(6), ids.get(2), ids.get(1)), ids(domestic));
+
+        Page<Article> user = userService.getFilteredArticlePage("b", Collections.emptyMap(), null, 10).block().getData();
+        assertEquals(list(ids.get(4), ids.get(1)), ids(user));
+    }
+
+    @Test
+    public void noConditionPagesTimeline() {
+        Page<Article> page = userService.getFilteredArticlePage(null, Collections.emptyMap(), ids.get(2), 10).block().getData();
+        assertEquals(list(ids.get(1), ids.get(0)), ids(page));
+    }
+
+    @Test
+    public void unknownValueIsEmpty() {
+        Page<Article> page = userService.getFilteredArticlePage("a", Collections.singletonMap("foreign", "maybe"), null, 10)
+                .block().getData();
+        assertEquals(0, page.getList().size());
+        assertNull(page.getNext());
+    }
+
+    private static List<Long> ids(Page<Article> page) {
+        return page.getList().stream().map(Article::getId).collect(Collectors.toList());
+    }
+
+    private static List<Long> list(Long... ids) {
+        List<Long> list = new ArrayList<>();
+        Collections.addAll(list, ids);
+        return list;
+    }
+}
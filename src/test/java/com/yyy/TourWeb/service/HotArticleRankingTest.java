@@ -0,0 +1,94 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.Comment;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_HOT_LOCK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HotArticleRankingTest extends IntegrationTest {
+
+    /**
+     * 默认配置下每次衰减的系数：半衰期24小时，间隔10分钟
+     */
+    private static final double FACTOR = Math.pow(0.5, 10.0 / (24 * 60));
+
+    private static final double DELTA = 1e-9;
+
+    @Autowired
+    private HotArticleRanking hotArticleRanking;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ArticleCounter articleCounter;
+
+    @Test
+    public void decayScalesScoresAndDropsLowOnes() {
+        score("1", 100);
+        score("2", 10);
+        score("3", 0.01);
+
+        hotArticleRanking.decay();
+        assertEquals(100 * FACTOR, score("1"), DELTA);
+        assertEquals(10 * FACTOR, score("2"), DELTA);
+        // 衰减后低于最低分数
+        assertNull(score("3"));
+        assertEquals(Arrays.asList("1", "2"), hotArticleRanking.top(10).block());
+
+        // 本周期已衰减过（其它实例执行时同样如此），不再衰减
+        hotArticleRanking.decay();
+        assertEquals(100 * FACTOR, score("1"), DELTA);
+    }
+
+    @Test
+    public void decayKeepsOnlyTopMembers() {
+        for (int i = 1; i <= 5; i++) {
+            score(String.valueOf(i), i);
+        }
+
+        Object maxSize = ReflectionTestUtils.getField(hotArticleRanking, "maxSize");
+        ReflectionTestUtils.setField(hotArticleRanking, "maxSize", 3L);
+        try {
+            hotArticleRanking.decay();
+        } finally {
+            ReflectionTestUtils.setField(hotArticleRanking, "maxSize", maxSize);
+        }
+
+        assertEquals(Arrays.asList("5", "4", "3"), hotArticleRanking.top(10).block());
+    }
+
+    @Test
+    public void clicksAndCommentsAddWeightedScores() {
+        Article article = Article.builder().title("标题").content("正文").userAccount("tester").isForeign(false).build();
+        userService.addArticle(article).block();
+        String id = article.getId().toString();
+
+        userService.getArticle(article.getId()).block();
+        userService.getArticle(article.getId()).block();
+        articleCounter.flush();
+        assertEquals(2 * hotArticleRanking.getClickWeight(), score(id), DELTA);
+
+        userService.addComment(new Comment(null, "评论", "tester", article.getId(), null)).block();
+        assertEquals(2 * hotArticleRanking.getClickWeight() + hotArticleRanking.getCommentWeight(), score(id), DELTA);
+    }
+
+    private void score(String id, double score) {
+        redisTemplate.opsForZSet().add(RedisKey.of(ARTICLE_HOT), id, score).block();
+        redisTemplate.delete(RedisKey.of(ARTICLE_HOT_LOCK)).block();
+    }
+
+    private Double score(String id) {
+        return redisTemplate.opsForZSet().score(RedisKey.of(ARTICLE_HOT), id).block();
+    }
+}
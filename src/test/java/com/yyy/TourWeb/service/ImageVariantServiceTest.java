@@ -0,0 +1,129 @@
+package com.yyy.TourWeb.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.scheduler.Scheduler;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImageVariantServiceTest {
+
+    private static final String NAME = "ab/cd/image.png";
+
+    private Path dir;
+
+    private ImageVariantService service;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("variant-test");
+        service = new ImageVariantService();
+        ReflectionTestUtils.setField(service, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(service, "widths", new int[]{320, 64});
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "queueSize", 16);
+        ReflectionTestUtils.setField(service, "maxPixels", 1000000L);
+        service.init();
+
+        Files.createDirectories(dir.resolve(NAME).getParent());
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB), "png", dir.resolve(NAME).toFile());
+    }
+
+    @After
+    public void tearDown() {
+        service.destroy();
+        FileSystemUtils.deleteRecursively(dir.toFile());
+    }
+
+    @Test
+    public void choosesSmallestWidthNotBelowRequested() throws IOException {
+        assertEquals(64, width(service.find(NAME, 10).block()));
+        assertEquals(64, width(service.find(NAME, 64).block()));
+        assertEquals(320, width(service.find(NAME, 65).block()));
+        // 比所有尺寸都宽或未指定宽度时输出原图
+        assertEquals(400, width(service.find(NAME, 1000).block()));
+        assertEquals(400, width(service.find(NAME, null).block()));
+    }
+
+    @Test
+    public void generatesVariantsKeepingAspectRatio() throws IOException {
+        service.generateAll(NAME).block();
+
+        BufferedImage small = ImageIO.read(dir.resolve(".variants/w64").resolve(NAME).toFile());
+        assertEquals(64, small.getWidth());
+        assertEquals(32, small.getHeight());
+        assertTrue(Files.isRegularFile(dir.resolve(".variants/w320").resolve(NAME)));
+
+        service.deleteVariants(NAME);
+        assertFalse(Files.exists(dir.resolve(".variants/w64").resolve(NAME)));
+    }
+
+    @Test
+    public void missingOrOutsideFilesAreNotFound() {
+        assertNull(service.find("ab/cd/missing.png", 64).block());
+        assertNull(service.find("../outside.png", null).block());
+        assertNull(service.find(".variants/w64/" + NAME, null).block());
+    }
+
+    @Test
+    public void rejectsImagesOverPixelLimit() throws IOException {
+        // 2000x1000 的纯色png只有几KB，解码后却要8MB
+        String name = "ab/cd/large.png";
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), "png", dir.resolve(name).toFile());
+
+        try {
+            service.read(dir.resolve(name));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("2000x1000"));
+        }
+        // 不生成缩略图，输出原图
+        assertEquals(2000, width(service.find(name, 64).block()));
+        assertFalse(Files.exists(dir.resolve(".variants/w64").resolve(name)));
+    }
+
+    @Test
+    public void servesOriginalsWhenQueueIsFull() throws IOException {
+        // 占住唯一的缩放线程并排满队列
+        Scheduler scheduler = (Scheduler) ReflectionTestUtils.getField(service, "scheduler");
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 1 + 16; i++) {
+            scheduler.schedule(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        try {
+            assertEquals(400, width(service.find(NAME, null).block(Duration.ofSeconds(5))));
+            // 缩略图被拒绝，返回原图
+            assertEquals(400, width(service.find(NAME, 64).block(Duration.ofSeconds(5))));
+            assertNull(service.find("ab/cd/missing.png", null).block(Duration.ofSeconds(5)));
+        } finally {
+            release.countDown();
+        }
+        assertFalse(Files.exists(dir.resolve(".variants/w64").resolve(NAME)));
+    }
+
+    private static int width(ImageVariantService.StoredFile file) throws IOException {
+        return ImageIO.read(file.getResource().getFile()).getWidth();
+    }
+}
@@ -0,0 +1,84 @@
+package com.yyy.TourWeb.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PasswordServiceTest {
+
+    private PasswordService passwordService;
+
+    @Before
+    public void setUp() {
+        passwordService = new PasswordService();
+        ReflectionTestUtils.setField(passwordService, "iterations", 1000);
+        ReflectionTestUtils.setField(passwordService, "threads", 2);
+        passwordService.init();
+    }
+
+    @After
+    public void tearDown() {
+        passwordService.destroy();
+    }
+
+    @Test
+    public void hashIsSaltedAndVerifies() {
+        String first = passwordService.hash("secret").block();
+        String second = passwordService.hash("secret").block();
+
+        assertNotEquals(first, second);
+        assertTrue(first.startsWith("pbkdf2$1000$"));
+        assertTrue(passwordService.verify("secret", first).block());
+        assertFalse(passwordService.verify("Secret", first).block());
+        assertFalse(passwordService.needsRehash(first));
+    }
+
+    @Test
+    public void verifiesOffCallerThread() {
+        String hash = passwordService.hash("secret").block();
+        String caller = Thread.currentThread().getName();
+
+        String worker = passwordService.verify("secret", hash)
+                .map(ok -> Thread.currentThread().getName())
+                .block();
+        assertNotEquals(caller, worker);
+        assertTrue(worker.startsWith("password"));
+    }
+
+    @Test
+    public void legacyPlaintextAndWeakHashesNeedRehash() {
+        assertTrue(passwordService.verify("secret", "secret").block());
+        assertFalse(passwordService.verify("secret", "other").block());
+        assertTrue(passwordService.needsRehash("secret"));
+
+        String weak = passwordService.hash("secret").block();
+        ReflectionTestUtils.setField(passwordService, "iterations", 2000);
+        assertTrue(passwordService.verify("secret", weak).block());
+        assertTrue(passwordService.needsRehash(weak));
+    }
+
+    @Test
+    public void corruptedHashesDoNotMatch() {
+        String hash = passwordService.hash("secret").block();
+        String[] parts = hash.split("\\$");
+
+        String[] corrupted = {
+                "pbkdf2$abc$" + parts[2] + "$" + parts[3],
+                "pbkdf2$0$" + parts[2] + "$" + parts[3],
+                "pbkdf2$1000$!!!$" + parts[3],
+                "pbkdf2$1000$" + parts[2] + "$%%%",
+                "pbkdf2$1000$$" + parts[3],
+                "pbkdf2$1000$" + parts[2],
+        };
+        for (String stored : corrupted) {
+            assertFalse(stored, passwordService.verify("secret", stored).block());
+        }
+        assertTrue(passwordService.needsRehash(corrupted[0]));
+        assertTrue(passwordService.needsRehash(corrupted[5]));
+    }
+}
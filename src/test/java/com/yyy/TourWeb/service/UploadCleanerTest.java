@@ -0,0 +1,100 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.yyy.TourWeb.tools.RedisKey.UPLOAD_REF;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadCleanerTest extends IntegrationTest {
+
+    @Autowired
+    private UploadCleaner uploadCleaner;
+
+    @Test
+    public void deletesOnlyUnreferencedExpiredFiles() throws IOException {
+        String unreferenced = createFile(true);
+        String released = createFile(true);
+        String referenced = createFile(true);
+        String fresh = createFile(false);
+        ref(released, "0");
+        ref(referenced, "1");
+
+        uploadCleaner.clean();
+
+        assertFalse(exists(unreferenced));
+        assertFalse(exists(released));
+        assertNull(redisTemplate.opsForHash().get(RedisKey.of(UPLOAD_REF), released).block());
+        assertTrue(exists(referenced));
+        assertEquals("1", redisTemplate.opsForHash().get(RedisKey.of(UPLOAD_REF), referenced).block());
+        // 刚上传、尚未被引用的文件在宽限期内保留
+        assertTrue(exists(fresh));
+    }
+
+    @Test
+    public void keepsFilesTouchedOrRetainedAfterListing() throws IOException {
+        String touched = createFile(true);
+        String retained = createFile(true);
+        long deadline = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+
+        // 列出候选文件之后：一个被重复上传刷新了修改时间，另一个被引用
+        Files.setLastModifiedTime(uploadDir().resolve(touched), FileTime.fromMillis(System.currentTimeMillis()));
+        ref(retained, "1");
+
+        assertEquals(0, uploadCleaner.cleanBatch(uploadDir(), Arrays.asList(touched, retained), deadline));
+        assertTrue(exists(touched));
+        assertTrue(exists(retained));
+        assertEquals("1", redisTemplate.opsForHash().get(RedisKey.of(UPLOAD_REF), retained).block());
+    }
+
+    @Test
+    public void skipsFilesAlreadyDeleted() throws IOException {
+        String path = createFile(true);
+        Files.delete(uploadDir().resolve(path));
+
+        assertEquals(0, uploadCleaner.cleanBatch(uploadDir(), Arrays.asList(path), System.currentTimeMillis()));
+    }
+
+    /**
+     * 在上传目录中按内容存放的位置建一个文件
+     *
+     * @param expired 修改时间是否早于宽限期
+     * @return 相对路径
+     */
+    private static String createFile(boolean expired) throws IOException {
+        StringBuilder hash = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hash.append(Character.forDigit(ThreadLocalRandom.current().nextInt(16), 16));
+        }
+        String path = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".png";
+
+        Path file = uploadDir().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{1, 2, 3});
+        if (expired) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        }
+        return path;
+    }
+
+    private void ref(String path, String count) {
+        redisTemplate.opsForHash().put(RedisKey.of(UPLOAD_REF), path, count).block();
+    }
+
+    private static boolean exists(String path) {
+        return Files.exists(uploadDir().resolve(path));
+    }
+}
@@ -0,0 +1,100 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.IntegrationTest;
+import com.yyy.TourWeb.domain.Article;
+import com.yyy.TourWeb.domain.User;
+import com.yyy.TourWeb.tools.RedisKey;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE;
+import static com.yyy.TourWeb.tools.RedisKey.ARTICLE_BODY;
+import static com.yyy.TourWeb.tools.RedisKey.UPLOAD_REF;
+import static com.yyy.TourWeb.tools.RedisKey.USER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class UploadReferenceTest extends IntegrationTest {
+
+    private static final String OLD_ICON = "00/11/" + repeat('a') + ".png";
+
+    private static final String NEW_ICON = "22/33/" + repeat('b') + ".jpg";
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void articleAndIconUpdatesMoveReferences() {
+        Article article = article(NEW_ICON);
+        assertEquals(Integer.valueOf(0), userService.addArticle(article).block().getCode());
+        assertEquals("1", ref(NEW_ICON));
+
+        saveUser(OLD_ICON);
+        ref(OLD_ICON, 1);
+        assertEquals(Integer.valueOf(0), userService.iconUpdate("tester", uploadDir() + "/" + NEW_ICON).block().getCode());
+        assertEquals("2", ref(NEW_ICON));
+        assertEquals("0", ref(OLD_ICON));
+
+        // 图标未变时引用数不变
+        userService.iconUpdate("tester", uploadDir() + "/" + NEW_ICON).block();
+        assertEquals("2", ref(NEW_ICON));
+    }
+
+    @Test
+    public void ignoresPathsNotStoredByContent() {
+        userService.addArticle(article("upload/legacy.png")).block();
+        assertNull(redisTemplate.opsForHash().get(RedisKey.of(UPLOAD_REF), "upload/legacy.png").block());
+    }
+
+    @Test
+    public void failedRetainFailsTheWrite() {
+        // 引用数的key类型不对，HINCRBY出错
+        redisTemplate.opsForValue().set(RedisKey.of(UPLOAD_REF), "x").block();
+        saveUser(OLD_ICON);
+
+        Article article = article(NEW_ICON);
+        try {
+            userService.addArticle(article).block();
+            fail();
+        } catch (RuntimeException expected) {
+            assertEquals(Boolean.FALSE, redisTemplate.opsForHash().hasKey(RedisKey.of(ARTICLE), String.valueOf(article.getId())).block());
+            // 正文与文章在同一个脚本中写入，不会留下没有文章的正文
+            assertEquals(Boolean.FALSE, redisTemplate.opsForHash().hasKey(RedisKey.of(ARTICLE_BODY), String.valueOf(article.getId())).block());
+        }
+
+        try {
+            userService.iconUpdate("tester", uploadDir() + "/" + NEW_ICON).block();
+            fail();
+        } catch (RuntimeException expected) {
+            assertEquals(uploadDir() + "/" + OLD_ICON, userService.getInfo("tester").block().getData().getIconPath());
+        }
+    }
+
+    private static Article article(String imgPath) {
+        return Article.builder().title("标题").content("正文").userAccount("tester").isForeign(false)
+                .imgPath(imgPath.startsWith("upload/") ? imgPath : uploadDir() + "/" + imgPath)
+                .build();
+    }
+
+    private void saveUser(String iconPath) {
+        redisTemplate.opsForHash().put(RedisKey.of(USER), "tester",
+                "{\"account\":\"tester\",\"password\":\"x\",\"iconPath\":\"" + uploadDir() + "/" + iconPath + "\"}").block();
+    }
+
+    private String ref(String path) {
+        return (String) redisTemplate.opsForHash().get(RedisKey.of(UPLOAD_REF), path).block();
+    }
+
+    private void ref(String path, long count) {
+        redisTemplate.opsForHash().put(RedisKey.of(UPLOAD_REF), path, String.valueOf(count)).block();
+    }
+
+    private static String repeat(char c) {
+        StringBuilder hash = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hash.append(c);
+        }
+        return hash.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.yyy.TourWeb.service;
+
+import com.yyy.TourWeb.tools.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadServiceTest {
+
+    private static final byte[] PNG_HEAD = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int CHUNK = 1024;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private Path dir;
+
+    private UploadService uploadService;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("upload-test");
+        uploadService = new UploadService();
+        ReflectionTestUtils.setField(uploadService, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(uploadService, "maxBytes", 4L * CHUNK);
+    }
+
+    @After
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(dir.toFile());
+    }
+
+    @Test
+    public void storesByContentHashOnce() throws IOException {
+        Result<String> first = uploadService.save(part(chunks(PNG_HEAD, 2))).block();
+        Result<String> second = uploadService.save(part(chunks(PNG_HEAD, 2))).block();
+
+        assertTrue(first.getSuccess());
+        assertEquals(first.getData(), second.getData());
+        String relative = uploadService.relativePath(first.getData());
+        assertTrue(UploadService.isContentPath(relative));
+        assertTrue(relative.endsWith(".png"));
+        assertEquals(2 * CHUNK, Files.size(dir.resolve(relative)));
+        assertEquals(0, tmpFiles());
+    }
+
+    @Test
+    public void abortsWhenSizeLimitExceeded() throws IOException {
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        // 不会结束的上传，超过上限后必须立即中止
+        Flux<DataBuffer> endless = Flux.<DataBuffer>generate(sink -> sink.next(chunk(emitted.getAndIncrement() == 0 ? PNG_HEAD : null)))
+                .doOnCancel(() -> cancelled.set(true));
+
+        Result<String> result = uploadService.save(part(endless)).block();
+
+        assertEquals(Integer.valueOf(4), result.getCode());
+        assertTrue(cancelled.get());
+        assertEquals(0, tmpFiles());
+    }
+
+    @Test
+    public void rejectsUnknownContentAfterHeader() throws IOException {
+        Result<String> result = uploadService.save(part(chunks("<script>".getBytes(), 3))).block();
+
+        assertEquals(Integer.valueOf(3), result.getCode());
+        assertEquals(0, tmpFiles());
+    }
+
+    @Test
+    public void rejectsTooShortFiles() throws IOException {
+        Result<String> result = uploadService.save(part(Flux.just(bufferFactory.wrap(new byte[]{(byte) 0x89, 'P'})))).block();
+
+        assertEquals(Integer.valueOf(3), result.getCode());
+        assertEquals(0, tmpFiles());
+    }
+
+    private Flux<DataBuffer> chunks(byte[] head, int count) {
+        return Flux.range(0, count).map(i -> chunk(i == 0 ? head : null));
+    }
+
+    private DataBuffer chunk(byte[] head) {
+        byte[] bytes = new byte[CHUNK];
+        if (head != null) {
+            System.arraycopy(head, 0, bytes, 0, head.length);
+        }
+        return bufferFactory.wrap(bytes);
+    }
+
+    private long tmpFiles() throws IOException {
+        Path tmp = dir.resolve(UploadService.TMP_DIR);
+        if (!Files.isDirectory(tmp)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(tmp)) {
+            return files.count();
+        }
+    }
+
+    private static FilePart part(Flux<DataBuffer> content) {
+        return new FilePart() {
+            @Override
+            public String filename() {
+                return "a.png";
+            }
+
+            @Override
+            public Mono<Void> transferTo(File dest) {
+                return Mono.error(new UnsupportedOperationException());
+            }
+
+            @Override
+            public String name() {
+                return "file";
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return new HttpHeaders();
+            }
+
+            @Override
+            public Flux<DataBuffer> content() {
+                return content;
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedStringSerializerTest {
+
+    private final CompressedStringSerializer serializer = new CompressedStringSerializer(64);
+
+    @Test
+    public void shortTextIsStoredAsPlainUtf8() {
+        ByteBuffer buffer = serializer.write("北京故宫");
+        assertEquals("北京故宫", StandardCharsets.UTF_8.decode(buffer.duplicate()).toString());
+        assertEquals("北京故宫", serializer.read(buffer));
+        assertEquals("", serializer.read(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void longTextIsCompressedAndReadBack() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("第").append(i).append("天，西湖断桥\n");
+        }
+
+        ByteBuffer buffer = serializer.write(text.toString());
+        assertEquals((byte) 0xFF, buffer.get(0));
+        assertTrue(buffer.remaining() < text.toString().getBytes(StandardCharsets.UTF_8).length / 2);
+        assertEquals(text.toString(), serializer.read(buffer));
+
+        // 旧的未压缩内容照常读取
+        assertEquals(text.toString(), serializer.read(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8))));
+    }
+}
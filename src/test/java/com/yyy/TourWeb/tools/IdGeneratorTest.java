@@ -0,0 +1,64 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void idsAreIncreasingAndFitInDouble() {
+        IdGenerator generator = new IdGenerator(3);
+
+        long prev = 0;
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > prev);
+            assertTrue(id < (1L << 53));
+            assertEquals(id, (long) (double) id);
+            prev = id;
+        }
+        assertTrue(Math.abs(IdGenerator.timestampOf(prev) - System.currentTimeMillis()) < 60000);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodeIdOutOfRange() {
+        new IdGenerator(IdGenerator.MAX_NODE_ID + 1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ImageTypeTest {
+
+    @Test
+    public void sniffsByMagicBytes() {
+        assertEquals(ImageType.JPG, sniff(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10, 'J', 'F'));
+        assertEquals(ImageType.PNG, sniff(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'));
+        assertEquals(ImageType.GIF, sniff('G', 'I', 'F', '8', '9', 'a', 1, 0));
+        assertEquals(ImageType.BMP, sniff('B', 'M', 0x36, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void rejectsOtherContent() {
+        assertNull(ImageType.sniff("<svg xml".getBytes(StandardCharsets.US_ASCII), 8));
+        assertNull(ImageType.sniff("GIF7....".getBytes(StandardCharsets.US_ASCII), 8));
+        // png的文件头被截断
+        assertNull(sniff(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, 0));
+    }
+
+    @Test
+    public void needsWholeMagic() {
+        byte[] head = {(byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0};
+        assertNull(ImageType.sniff(head, 4));
+        assertEquals(ImageType.BMP, ImageType.sniff(new byte[]{'B', 'M', 0, 0, 0, 0, 0, 0}, 2));
+        assertNull(ImageType.sniff(new byte[]{'B', 'M', 0, 0, 0, 0, 0, 0}, 1));
+    }
+
+    private static ImageType sniff(int... bytes) {
+        byte[] head = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            head[i] = (byte) bytes[i];
+        }
+        return ImageType.sniff(head, head.length);
+    }
+}
@@ -0,0 +1,49 @@
+package com.yyy.TourWeb.tools;
+
+import com.yyy.TourWeb.domain.Article;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonRedisSerializerTest {
+
+    private final JsonRedisSerializer<Article> serializer = new JsonRedisSerializer<>(Article.class);
+
+    @Test
+    public void writesSameJsonAsJsonUtilsAndReadsItBack() {
+        Article article = Article.builder().id(1L).title("故宫").isForeign(false).gmtCreate(ZonedDateTime.now()).build();
+
+        ByteBuffer buffer = serializer.write(article);
+        assertEquals(JsonUtils.toString(article), StandardCharsets.UTF_8.decode(buffer.duplicate()).toString());
+        assertEquals(JsonUtils.toObject(JsonUtils.toString(article), Article.class), serializer.read(buffer));
+
+        // 非堆内存
+        ByteBuffer direct = ByteBuffer.allocateDirect(buffer.remaining());
+        direct.put(buffer.duplicate()).flip();
+        assertEquals(serializer.read(buffer), serializer.read(direct));
+    }
+
+    @Test
+    public void readsLegacyTimestampJsonAndEmptyAsNull() {
+        Article article = serializer.read(utf8("{\"id\":5,\"title\":\"旧\",\"clickCount\":3,\"gmtCreate\":1500000000.000000000}"));
+        assertEquals(Long.valueOf(5), article.getId());
+        assertEquals(1500000000L, article.getGmtCreate().toEpochSecond());
+
+        assertNull(serializer.read(ByteBuffer.allocate(0)));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void failsOnCorruptJson() {
+        serializer.read(utf8("{bad"));
+    }
+
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
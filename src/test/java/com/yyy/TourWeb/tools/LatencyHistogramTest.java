@@ -0,0 +1,43 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndWithinPrecision() {
+        int previous = -1;
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(index == previous || index == previous + 1);
+            assertTrue(LatencyHistogram.upperBound(index) >= value);
+            assertTrue(LatencyHistogram.upperBound(index) - value <= value / 32);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(LatencyHistogram.MAX_VALUE)));
+    }
+
+    @Test
+    public void quantilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        long[] values = histogram.quantiles(0.5, 0.99, 1);
+        assertEquals(5000, values[0], 5000 / 32);
+        assertEquals(9900, values[1], 9900 / 32);
+        assertEquals(10000, values[2]);
+
+        // 负数和超出范围的值不会越界
+        histogram.recordNanos(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+        assertEquals(0, new LatencyHistogram().quantile(0.99));
+    }
+}
@@ -0,0 +1,69 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstThenRefill() {
+        RateLimiter limiter = new RateLimiter(2, 5, 100);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("a", now));
+        }
+        // 桶空，每秒2个令牌，需等0.5秒
+        assertEquals(SECOND / 2, limiter.tryAcquire("a", now));
+        assertEquals(SECOND / 4, limiter.tryAcquire("a", now + SECOND / 4));
+        // 其他key不受影响
+        assertEquals(0, limiter.tryAcquire("b", now));
+
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND / 2));
+        assertTrue(limiter.tryAcquire("a", now + SECOND / 2) > 0);
+
+        // 空闲足够久后桶补满，但不超过容量
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("a", later));
+        }
+        assertTrue(limiter.tryAcquire("a", later) > 0);
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsBurst() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1, 100, 100);
+        long now = System.nanoTime();
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    if (limiter.tryAcquire("a", now) == 0) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, acquired.get());
+    }
+}
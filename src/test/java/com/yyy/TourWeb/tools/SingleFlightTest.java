@@ -0,0 +1,56 @@
+package com.yyy.TourWeb.tools;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void concurrentCallsShareOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        Mono<String> call = singleFlight.execute(1L, () -> Mono.fromSupplier(() -> "v" + loads.incrementAndGet())
+                .delayElement(Duration.ofMillis(200)));
+
+        List<String> results = Flux.range(0, 50).flatMap(i -> call).collectList().block();
+        assertEquals(50, results.size());
+        assertTrue(results.stream().allMatch("v1"::equals));
+        assertEquals(1, loads.get());
+        assertEquals(50, singleFlight.getCalls());
+        assertEquals(49, singleFlight.getCollapsed());
+        assertEquals(0L, (long) singleFlight.stats().get("inFlight"));
+
+        // 结束后不缓存，再次调用重新加载
+        assertEquals("v2", call.block());
+    }
+
+    @Test
+    public void emptyAndErrorResultsAreSharedAndNotKept() {
+        Mono<String> empty = singleFlight.execute(2L, () -> Mono.<String>empty().delaySubscription(Duration.ofMillis(100)));
+        assertEquals(Long.valueOf(0), Flux.range(0, 10).flatMap(i -> empty).count().block());
+
+        AtomicInteger loads = new AtomicInteger();
+        Mono<String> error = singleFlight.execute(3L, () -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("redis");
+        });
+        try {
+            error.block();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("redis", e.getMessage());
+        }
+        assertEquals("ok", singleFlight.execute(3L, () -> Mono.just("ok")).block());
+        assertEquals(1, loads.get());
+    }
+}